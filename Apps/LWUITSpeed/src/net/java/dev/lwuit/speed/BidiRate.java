@@ -0,0 +1,135 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package net.java.dev.lwuit.speed;
+
+import com.sun.lwuit.Display;
+import com.sun.lwuit.Form;
+import com.sun.lwuit.Graphics;
+
+/**
+ * Tests how fast right to left text can be painted when the bidi algorithm is
+ * active, the first half of the test converts the text through the bidi cache
+ * of the display and the second half with the cache disabled
+ */
+public class BidiRate extends Form {
+    private static int cachedFramerate;
+    private static int uncachedFramerate;
+
+    private static final int TEST_DURATION = 10000;
+    private static final int RAMP_UP_DURATION = 1000;
+    private long startTime = System.currentTimeMillis();
+    private static int paintCalls;
+    private static int cachedPaintCalls;
+    private boolean cached = true;
+
+    private static final String[] LINES = {
+        "\u05e9\u05dc\u05d5\u05dd \u05e2\u05d5\u05dc\u05dd",
+        "\u05d4\u05d5\u05d3\u05e2\u05d4 \u05d7\u05d3\u05e9\u05d4 (3)",
+        "LWUIT \u05d1\u05e2\u05d1\u05e8\u05d9\u05ea 1.4",
+        "\u05ea\u05d9\u05d1\u05ea \u05d3\u05d5\u05d0\u05e8 - Inbox",
+        "\u05e9\u05d9\u05d7\u05d4 \u05e0\u05db\u05e0\u05e1\u05ea 054-1234567",
+        "\u05d4\u05d2\u05d3\u05e8\u05d5\u05ea \u05de\u05e2\u05e8\u05db\u05ea",
+        "\u05d0\u05e0\u05e9\u05d9 \u05e7\u05e9\u05e8: \u05d3\u05e0\u05d4, \u05d9\u05d5\u05e1\u05d9",
+        "12:45 \u05ea\u05d6\u05db\u05d5\u05e8\u05ea \u05e4\u05d2\u05d9\u05e9\u05d4",
+        "\u05d2\u05dc\u05e8\u05d9\u05d4 (24 \u05ea\u05de\u05d5\u05e0\u05d5\u05ea)",
+        "\u05d9\u05e6\u05d9\u05d0\u05d4 Exit"
+    };
+
+    public static int getFramecount() {
+        return paintCalls;
+    }
+
+    public BidiRate() {
+        final boolean bidi = Display.getInstance().isBidiAlgorithm();
+        final int cacheSize = Display.getInstance().getBidiCacheSize();
+        Display.getInstance().setBidiAlgorithm(true);
+        new Thread() {
+            public void run() {
+                while (System.currentTimeMillis() - startTime < TEST_DURATION) {
+                    if(cached && System.currentTimeMillis() - startTime > TEST_DURATION / 2) {
+                        Display.getInstance().callSeriallyAndWait(new Runnable() {
+                            public void run() {
+                                cachedPaintCalls = paintCalls;
+                                cached = false;
+                                Display.getInstance().setBidiCacheSize(0);
+                            }
+                        });
+                    }
+                    repaint();
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException ex) {}
+                }
+                Display.getInstance().callSeriallyAndWait(new Runnable() {
+                    public void run() {
+                        Display.getInstance().setBidiCacheSize(cacheSize);
+                        Display.getInstance().setBidiAlgorithm(bidi);
+                    }
+                });
+                int seconds = (TEST_DURATION / 2 - RAMP_UP_DURATION) / 1000;
+                cachedFramerate = cachedPaintCalls / seconds;
+                uncachedFramerate = (paintCalls - cachedPaintCalls) / seconds;
+                new GroupLayoutRate();
+            }
+        }.start();
+        show();
+    }
+
+    /**
+     * The frame rate with the bidi cache of the display
+     *
+     * @return frames per second
+     */
+    public static int getCachedFramerate() {
+        return cachedFramerate;
+    }
+
+    /**
+     * The frame rate with the bidi cache of the display disabled
+     *
+     * @return frames per second
+     */
+    public static int getUncachedFramerate() {
+        return uncachedFramerate;
+    }
+
+    public void paint(Graphics g) {
+        long time = System.currentTimeMillis() - startTime;
+        if(time % (TEST_DURATION / 2) > RAMP_UP_DURATION) {
+            paintCalls++;
+        }
+        g.setColor(0xffffff);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        g.setColor(0);
+        int y = 0;
+        int height = g.getFont().getHeight() + 2;
+        while(y < getHeight()) {
+            for(int iter = 0 ; iter < LINES.length && y < getHeight() ; iter++) {
+                g.drawString(Display.getInstance().convertBidiLogicalToVisual(LINES[iter]), 0, y);
+                y += height;
+            }
+        }
+    }
+}
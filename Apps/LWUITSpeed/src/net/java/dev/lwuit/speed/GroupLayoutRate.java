@@ -0,0 +1,127 @@
+/*
+ * Copyright 2008 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package net.java.dev.lwuit.speed;
+
+import com.sun.lwuit.Container;
+import com.sun.lwuit.Display;
+import com.sun.lwuit.Form;
+import com.sun.lwuit.Label;
+import com.sun.lwuit.M3G;
+import com.sun.lwuit.TextField;
+import com.sun.lwuit.layouts.GroupLayout;
+
+/**
+ * Tests how fast a form arranged by a GroupLayout can be laid out again after the
+ * text of one of its labels changes, this is the common case for forms created
+ * in the resource editor
+ */
+public class GroupLayoutRate extends Form {
+    private static int averageFramerate;
+
+    private static final int TEST_DURATION = 10000;
+    private static final int RAMP_UP_DURATION = 1000;
+    private static final int ROWS = 20;
+    private long startTime = System.currentTimeMillis();
+    private static int layoutCalls;
+    private Label[] labels = new Label[ROWS];
+    private int iteration;
+
+    public static int getFramecount() {
+        return layoutCalls;
+    }
+
+    public GroupLayoutRate() {
+        super("GroupLayout");
+        createRows(getContentPane(), labels);
+        show();
+        new Thread() {
+            public void run() {
+                while (System.currentTimeMillis() - startTime < TEST_DURATION) {
+                    Display.getInstance().callSeriallyAndWait(new Runnable() {
+                        public void run() {
+                            changeLabel(labels, iteration);
+                            iteration++;
+                            revalidate();
+                            if(System.currentTimeMillis() - startTime > RAMP_UP_DURATION) {
+                                layoutCalls++;
+                            }
+                        }
+                    });
+                }
+                averageFramerate = layoutCalls / ((TEST_DURATION - RAMP_UP_DURATION) / 1000);
+                if(M3G.isM3GSupported()) {
+                    new Framerate3D();
+                } else {
+                    new ListTest();
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * Arranges rows of a label and a text field in the container in two aligned
+     * columns with baseline aligned rows
+     *
+     * @param cnt the container
+     * @param labels array that receives the labels
+     */
+    static void createRows(Container cnt, Label[] labels) {
+        GroupLayout layout = new GroupLayout(cnt);
+        cnt.setLayout(layout);
+        layout.setAutocreateGaps(true);
+        layout.setAutocreateContainerGaps(true);
+        GroupLayout.ParallelGroup labelColumn = layout.createParallelGroup();
+        GroupLayout.ParallelGroup fieldColumn = layout.createParallelGroup();
+        GroupLayout.SequentialGroup rows = layout.createSequentialGroup();
+        for(int iter = 0 ; iter < labels.length ; iter++) {
+            labels[iter] = new Label("Field " + iter);
+            TextField field = new TextField("Value " + iter);
+            labelColumn.add(labels[iter]);
+            fieldColumn.add(field);
+            rows.add(layout.createParallelGroup(GroupLayout.BASELINE).add(labels[iter]).add(field));
+        }
+        layout.setHorizontalGroup(layout.createSequentialGroup().add(labelColumn).add(fieldColumn));
+        layout.setVerticalGroup(rows);
+    }
+
+    /**
+     * Changes the width of one of the labels so the layout has to be solved again
+     *
+     * @param labels the labels of the form
+     * @param iteration the number of changes made so far
+     */
+    static void changeLabel(Label[] labels, int iteration) {
+        int row = iteration % labels.length;
+        if((iteration / labels.length) % 2 == 0) {
+            labels[row].setText("Long field name " + row);
+        } else {
+            labels[row].setText("Field " + row);
+        }
+    }
+
+    public static int getAverageFramerate() {
+        return averageFramerate;
+    }
+}
@@ -28,7 +28,6 @@ import com.sun.lwuit.Form;
 import com.sun.lwuit.Graphics;
 import com.sun.lwuit.Image;
 import com.sun.lwuit.IndexedImage;
-import com.sun.lwuit.M3G;
 import java.io.IOException;
 
 /**
@@ -63,11 +62,7 @@ public class IndexedImageTest extends Form {
                         } catch (InterruptedException ex) {}
                     }
                     averageFramerate = paintCalls / ((TEST_DURATION - RAMP_UP_DURATION) / 1000);
-                    if(M3G.isM3GSupported()) {
-                        new Framerate3D();
-                    } else {
-                        new ListTest();
-                    }
+                    new BidiRate();
                 }
             }.start();
             show();
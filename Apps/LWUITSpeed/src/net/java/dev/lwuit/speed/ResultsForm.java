@@ -41,17 +41,19 @@ public class ResultsForm extends Form {
     public ResultsForm() {
         int score;
         if(M3G.isM3GSupported()) {
-            setLayout(new GridLayout(8, 2));
+            setLayout(new GridLayout(11, 2));
             score = FramerateTest.getFramecount() + DrawingRate.getFramecount() +
                 GradientRate.getFramecount() + BitmapFontRate.getFramecount() +
                 ScalingRate.getFramecount() + Framerate3D.getFramecount() + IndexedImageTest.getFramecount() +
-                ListTest.getFramecount() + ComponentTest.getFramecount();
+                BidiRate.getFramecount() +
+                GroupLayoutRate.getFramecount() + ListTest.getFramecount() + ComponentTest.getFramecount();
         } else {
-            setLayout(new GridLayout(7, 2));
+            setLayout(new GridLayout(10, 2));
             score = FramerateTest.getFramecount() + DrawingRate.getFramecount() +
                 GradientRate.getFramecount() + BitmapFontRate.getFramecount() +
                 ScalingRate.getFramecount()+ IndexedImageTest.getFramecount() +
-                ListTest.getFramecount() + ComponentTest.getFramecount();
+                BidiRate.getFramecount() +
+                GroupLayoutRate.getFramecount() + ListTest.getFramecount() + ComponentTest.getFramecount();
         }
         addComponent(createLabel("Framerate/Blit"));
         addComponent(createLabel(FramerateTest.getAverageFramerate() + "fps"));
@@ -65,6 +67,12 @@ public class ResultsForm extends Form {
         addComponent(createLabel(ScalingRate.getAverageFramerate() + "fps"));
         addComponent(createLabel("Indexed Image"));
         addComponent(createLabel(IndexedImageTest.getAverageFramerate() + "fps"));
+        addComponent(createLabel("Bidi Cached"));
+        addComponent(createLabel(BidiRate.getCachedFramerate() + "fps"));
+        addComponent(createLabel("Bidi Uncached"));
+        addComponent(createLabel(BidiRate.getUncachedFramerate() + "fps"));
+        addComponent(createLabel("GroupLayout"));
+        addComponent(createLabel(GroupLayoutRate.getAverageFramerate() + "fps"));
         if(M3G.isM3GSupported()) {
             addComponent(createLabel("3D"));
             addComponent(createLabel(Framerate3D.getAverageFramerate() + "fps"));
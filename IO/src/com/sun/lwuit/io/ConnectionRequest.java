@@ -1004,6 +1004,29 @@ public class ConnectionRequest implements IOProgressListener {
         }
     }
 
+    /**
+     * Notifies the response code listeners of this connection of an error response
+     * code without showing a dialog or retrying
+     *
+     * @param code the response code from the server
+     * @param message the response message from the server
+     */
+    protected void fireResponseCodeListener(int code, String message) {
+        if(responseCodeListeners != null) {
+            responseCodeListeners.fireActionEvent(new NetworkEvent(this, code, message));
+        }
+    }
+
+    /**
+     * Notifies the error listeners of the network manager of an exception in this
+     * connection without showing a dialog or retrying
+     *
+     * @param err the exception thrown
+     */
+    protected void fireErrorListener(Exception err) {
+        NetworkManager.getInstance().handleException(this, err);
+    }
+
     /**
      * Indicates whether this connection request supports duplicate entries in the request queue
      *
@@ -88,7 +88,7 @@ public class NetworkManager {
     private NetworkManager() {
     }
 
-    private boolean handleException(ConnectionRequest r, Exception o) {
+    boolean handleException(ConnectionRequest r, Exception o) {
         if(errorListeners != null) {
             ActionEvent ev = new NetworkEvent(r, o);
             errorListeners.fireActionEvent(ev);
@@ -0,0 +1,687 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.lwuit.io.services;
+
+import com.sun.lwuit.Image;
+import com.sun.lwuit.io.Storage;
+import com.sun.lwuit.io.util.Util;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * A two level cache for downloaded images used by the ImageDownloadService.
+ * The memory tier holds decoded images and is limited by the number of bytes
+ * the decoded ARGB data occupies, the disk tier holds the encoded image data
+ * in storage and is limited by the total number of encoded bytes. Both tiers
+ * evict the least recently used entries first.
+ * <p>Entries can optionally expire after a given age, expired entries that
+ * were served with an ETag are revalidated with the server rather than downloaded
+ * again.
+ * <p>Entries are keyed by the URL by default, subclasses can override createKey
+ * to map several URLs to the same entry (e.g. by removing session arguments).
+ */
+public class ImageCache {
+    private static final String INDEX_NAME = "$IMGCACHE$";
+    private static final String ENTRY_PREFIX = "$IMG$";
+
+    private int memoryBudget = 512 * 1024;
+    private int diskBudget = 1024 * 1024;
+    private long maxAge = -1;
+
+    // memory tier, a hashtable of entries that are also linked in access order
+    private Hashtable memory = new Hashtable();
+    private MemoryEntry mostRecent;
+    private MemoryEntry leastRecent;
+    private int memorySize;
+
+    // disk tier, loaded lazily from the index stored in storage
+    private Hashtable disk;
+    private int diskSize;
+    private int nextEntryId;
+    private boolean indexModified;
+
+    private int memoryHits;
+    private int diskHits;
+    private int misses;
+
+    /**
+     * Creates the key under which the image for the given URL is cached, by default
+     * this is the URL itself.
+     *
+     * @param url the URL of the image
+     * @return the cache key
+     */
+    protected String createKey(String url) {
+        return url;
+    }
+
+    /**
+     * Returns the decoded image for the given URL or null if it isn't cached or the
+     * entry expired
+     *
+     * @param url the URL of the image
+     * @return the cached image or null
+     */
+    public synchronized Image get(String url) {
+        String key = createKey(url);
+        MemoryEntry m = (MemoryEntry)memory.get(key);
+        if(m != null) {
+            if(!isExpired(m.created)) {
+                unlink(m);
+                linkMostRecent(m);
+                memoryHits++;
+                return m.image;
+            }
+            // the disk entry carries the ETag needed to revalidate the image
+            removeFromMemory(key);
+        }
+        DiskEntry d = getDiskEntry(key);
+        if(d != null) {
+            if(!isExpired(d)) {
+                Image i = loadFromDisk(key, d);
+                if(i != null) {
+                    diskHits++;
+                    return i;
+                }
+            } else {
+                // expired entries are only useful if they can be revalidated
+                if(d.etag == null) {
+                    removeDiskEntry(key, d);
+                    flush();
+                }
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Returns the ETag of an expired disk entry so the image can be revalidated with
+     * the server, returns null if there is no such entry
+     *
+     * @param url the URL of the image
+     * @return the ETag of the expired entry or null
+     */
+    public synchronized String getExpiredETag(String url) {
+        DiskEntry d = getDiskEntry(createKey(url));
+        if(d != null && d.etag != null && isExpired(d)) {
+            return d.etag;
+        }
+        return null;
+    }
+
+    /**
+     * Indicates the server confirmed an expired entry is still valid (HTTP 304),
+     * the entry is renewed and its image returned
+     *
+     * @param url the URL of the image
+     * @return the cached image or null if the entry was removed in the meantime
+     */
+    public synchronized Image revalidated(String url) {
+        String key = createKey(url);
+        DiskEntry d = getDiskEntry(key);
+        if(d == null) {
+            return null;
+        }
+        d.created = System.currentTimeMillis();
+        indexModified = true;
+        return loadFromDisk(key, d);
+    }
+
+    /**
+     * Places the encoded image data in the cache and returns the decoded image,
+     * the image is decoded and written to storage without holding the cache lock
+     * so lookups aren't blocked while it is added
+     *
+     * @param url the URL of the image
+     * @param data the encoded image data
+     * @param etag the ETag sent by the server or null
+     * @return the decoded image
+     * @throws IOException if the data isn't a valid image, nothing is cached in this case
+     */
+    public Image put(String url, byte[] data, String etag) throws IOException {
+        String key = createKey(url);
+        Image i = decode(data, url);
+        String name = createEntryName();
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(Storage.getInstance().createOutputStream(name));
+            writeHeader(out, data.length);
+            out.write(data);
+            out.close();
+        } catch(IOException err) {
+            err.printStackTrace();
+            Util.cleanup(out);
+            Storage.getInstance().deleteStorageFile(name);
+            name = null;
+        }
+        synchronized(this) {
+            long created = System.currentTimeMillis();
+            if(name != null) {
+                addDiskEntry(key, createDiskEntry(key, name, data.length, etag, created));
+            }
+            putInMemory(key, i, created);
+        }
+        return i;
+    }
+
+    /**
+     * Writes the encoded image data from the stream directly into the disk tier
+     * without holding it in RAM and returns the decoded image. The data is streamed
+     * into a new storage entry and decoded without holding the cache lock, the lock
+     * is only taken to replace the index entry so lookups aren't blocked by the
+     * download.
+     *
+     * @param url the URL of the image
+     * @param data stream containing exactly length bytes of encoded image data
+     * @param length the number of bytes in the stream
+     * @param etag the ETag sent by the server or null
+     * @return the decoded image
+     * @throws IOException if reading the stream or writing the storage fails or the
+     * data isn't a valid image, nothing is cached in these cases
+     */
+    public Image put(String url, InputStream data, int length, String etag) throws IOException {
+        String key = createKey(url);
+        String name = createEntryName();
+        DataOutputStream out = null;
+        boolean success = false;
+        try {
+            out = new DataOutputStream(Storage.getInstance().createOutputStream(name));
+            writeHeader(out, length);
+            byte[] buffer = new byte[4096];
+            int remaining = length;
+            while(remaining > 0) {
+                int size = data.read(buffer, 0, Math.min(remaining, buffer.length));
+                if(size < 0) {
+                    throw new IOException("Image data ended before the content length was reached");
+                }
+                out.write(buffer, 0, size);
+                remaining -= size;
+            }
+            out.close();
+            success = true;
+        } finally {
+            if(!success) {
+                Util.cleanup(out);
+                Storage.getInstance().deleteStorageFile(name);
+            }
+        }
+
+        // no one else knows the name of the new entry so it can be decoded unlocked
+        Image i;
+        try {
+            i = readImage(name);
+        } catch(IOException err) {
+            Storage.getInstance().deleteStorageFile(name);
+            throw err;
+        }
+        synchronized(this) {
+            long created = System.currentTimeMillis();
+            addDiskEntry(key, createDiskEntry(key, name, length, etag, created));
+            putInMemory(key, i, created);
+        }
+        return i;
+    }
+
+    /**
+     * Returns the encoded data of the image cached for the given URL or null if the
+     * disk tier doesn't hold it
+     */
+    synchronized byte[] getData(String url) {
+        DiskEntry d = getDiskEntry(createKey(url));
+        if(d != null) {
+            return (byte[])Storage.getInstance().readObject(d.name);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the image for the given URL from both tiers
+     *
+     * @param url the URL of the image
+     */
+    public synchronized void remove(String url) {
+        String key = createKey(url);
+        removeFromMemory(key);
+        DiskEntry d = getDiskEntry(key);
+        if(d != null) {
+            removeDiskEntry(key, d);
+            flush();
+        }
+    }
+
+    /**
+     * Clears the memory tier
+     */
+    public synchronized void clearMemory() {
+        memory.clear();
+        mostRecent = null;
+        leastRecent = null;
+        memorySize = 0;
+    }
+
+    /**
+     * Clears both tiers deleting all the cached images from storage
+     */
+    public synchronized void clear() {
+        clearMemory();
+        loadIndex();
+        Enumeration e = disk.elements();
+        while(e.hasMoreElements()) {
+            Storage.getInstance().deleteStorageFile(((DiskEntry)e.nextElement()).name);
+        }
+        disk.clear();
+        diskSize = 0;
+        indexModified = true;
+        flush();
+    }
+
+    /**
+     * Writes the disk tier index into storage if it was modified, access times are
+     * only persisted when this method is invoked or when the disk tier changes
+     */
+    public synchronized void flush() {
+        if(!indexModified || disk == null) {
+            return;
+        }
+        Vector index = new Vector();
+        Enumeration e = disk.keys();
+        while(e.hasMoreElements()) {
+            String key = (String)e.nextElement();
+            DiskEntry d = (DiskEntry)disk.get(key);
+            Vector v = new Vector();
+            v.addElement(key);
+            v.addElement(d.name);
+            v.addElement(new Integer(d.size));
+            v.addElement(new Long(d.lastAccess));
+            v.addElement(new Long(d.created));
+            if(d.etag != null) {
+                v.addElement(d.etag);
+            }
+            index.addElement(v);
+        }
+        Storage.getInstance().writeObject(INDEX_NAME, index);
+        indexModified = false;
+    }
+
+    /**
+     * Writes the header Storage.writeObject writes for a byte array so the entries
+     * can be read with Storage.readObject
+     */
+    private void writeHeader(DataOutputStream out, int length) throws IOException {
+        out.writeBoolean(true);
+        out.writeUTF("ByteArray");
+        out.writeInt(length);
+    }
+
+    private boolean isExpired(DiskEntry d) {
+        return isExpired(d.created);
+    }
+
+    private boolean isExpired(long created) {
+        return maxAge > -1 && System.currentTimeMillis() - created > maxAge;
+    }
+
+    private Image loadFromDisk(String key, DiskEntry d) {
+        try {
+            Image i = readImage(d.name);
+            d.lastAccess = System.currentTimeMillis();
+            indexModified = true;
+            putInMemory(key, i, d.created);
+            return i;
+        } catch(Exception err) {
+            // the entry is corrupt or was deleted by someone else
+            err.printStackTrace();
+            removeDiskEntry(key, d);
+            return null;
+        }
+    }
+
+    private static Image readImage(String name) throws IOException {
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(Storage.getInstance().createInputStream(name));
+            input.readBoolean();
+            input.readUTF();
+            byte[] data = new byte[input.readInt()];
+            input.readFully(data);
+            input.close();
+            input = null;
+            return decode(data, name);
+        } finally {
+            Util.cleanup(input);
+        }
+    }
+
+    /**
+     * Decodes the image data, data that isn't an image (e.g. an error page the server
+     * sent with a 200 response code) is reported as an IOException
+     */
+    private static Image decode(byte[] data, String name) throws IOException {
+        try {
+            return Image.createImage(data, 0, data.length);
+        } catch(RuntimeException err) {
+            throw new IOException("Undecodable image data in " + name);
+        }
+    }
+
+    private void removeFromMemory(String key) {
+        MemoryEntry m = (MemoryEntry)memory.remove(key);
+        if(m != null) {
+            unlink(m);
+            memorySize -= m.size;
+        }
+    }
+
+    private void putInMemory(String key, Image i, long created) {
+        int size = i.getWidth() * i.getHeight() * 4;
+        removeFromMemory(key);
+        if(size > memoryBudget) {
+            return;
+        }
+        while(memorySize + size > memoryBudget && leastRecent != null) {
+            MemoryEntry oldest = leastRecent;
+            unlink(oldest);
+            memory.remove(oldest.key);
+            memorySize -= oldest.size;
+        }
+        MemoryEntry m = new MemoryEntry();
+        m.key = key;
+        m.image = i;
+        m.size = size;
+        m.created = created;
+        memory.put(key, m);
+        linkMostRecent(m);
+        memorySize += size;
+    }
+
+    private void linkMostRecent(MemoryEntry m) {
+        m.previous = null;
+        m.next = mostRecent;
+        if(mostRecent != null) {
+            mostRecent.previous = m;
+        }
+        mostRecent = m;
+        if(leastRecent == null) {
+            leastRecent = m;
+        }
+    }
+
+    private void unlink(MemoryEntry m) {
+        if(m.previous != null) {
+            m.previous.next = m.next;
+        } else {
+            mostRecent = m.next;
+        }
+        if(m.next != null) {
+            m.next.previous = m.previous;
+        } else {
+            leastRecent = m.previous;
+        }
+        m.previous = null;
+        m.next = null;
+    }
+
+    private DiskEntry getDiskEntry(String key) {
+        loadIndex();
+        return (DiskEntry)disk.get(key);
+    }
+
+    /**
+     * Reserves the name of a new storage entry, the entry isn't part of the index
+     * until it is passed to createDiskEntry
+     */
+    private synchronized String createEntryName() {
+        loadIndex();
+        String name = ENTRY_PREFIX + nextEntryId;
+        nextEntryId++;
+        return name;
+    }
+
+    private DiskEntry createDiskEntry(String key, String name, int size, String etag, long created) {
+        loadIndex();
+        DiskEntry existing = (DiskEntry)disk.get(key);
+        if(existing != null) {
+            removeDiskEntry(key, existing);
+        }
+        DiskEntry d = new DiskEntry();
+        d.name = name;
+        d.size = size;
+        d.etag = etag;
+        d.created = created;
+        d.lastAccess = created;
+        return d;
+    }
+
+    private void addDiskEntry(String key, DiskEntry d) {
+        disk.put(key, d);
+        diskSize += d.size;
+
+        // evict the least recently used entries until we fit in the budget, we never
+        // evict the entry we just added
+        while(diskSize > diskBudget && disk.size() > 1) {
+            String oldestKey = null;
+            DiskEntry oldest = null;
+            Enumeration e = disk.keys();
+            while(e.hasMoreElements()) {
+                String currentKey = (String)e.nextElement();
+                DiskEntry current = (DiskEntry)disk.get(currentKey);
+                if(current != d && (oldest == null || current.lastAccess < oldest.lastAccess)) {
+                    oldest = current;
+                    oldestKey = currentKey;
+                }
+            }
+            removeDiskEntry(oldestKey, oldest);
+        }
+        indexModified = true;
+        flush();
+    }
+
+    private void removeDiskEntry(String key, DiskEntry d) {
+        disk.remove(key);
+        diskSize -= d.size;
+        Storage.getInstance().deleteStorageFile(d.name);
+        indexModified = true;
+    }
+
+    private void loadIndex() {
+        if(disk != null) {
+            return;
+        }
+        disk = new Hashtable();
+        diskSize = 0;
+        Vector index = (Vector)Storage.getInstance().readObject(INDEX_NAME);
+        if(index == null) {
+            return;
+        }
+        int count = index.size();
+        for(int iter = 0 ; iter < count ; iter++) {
+            Vector v = (Vector)index.elementAt(iter);
+            DiskEntry d = new DiskEntry();
+            d.name = (String)v.elementAt(1);
+            d.size = ((Integer)v.elementAt(2)).intValue();
+            d.lastAccess = ((Long)v.elementAt(3)).longValue();
+            d.created = ((Long)v.elementAt(4)).longValue();
+            if(v.size() > 5) {
+                d.etag = (String)v.elementAt(5);
+            }
+            disk.put(v.elementAt(0), d);
+            diskSize += d.size;
+            int id = Integer.parseInt(d.name.substring(ENTRY_PREFIX.length()));
+            if(id >= nextEntryId) {
+                nextEntryId = id + 1;
+            }
+        }
+    }
+
+    /**
+     * The number of bytes of decoded image data the memory tier may hold, decoded
+     * images are assumed to occupy 4 bytes per pixel
+     *
+     * @return the memoryBudget
+     */
+    public int getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * The number of bytes of decoded image data the memory tier may hold, decoded
+     * images are assumed to occupy 4 bytes per pixel
+     *
+     * @param memoryBudget the memoryBudget to set
+     */
+    public synchronized void setMemoryBudget(int memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        while(memorySize > memoryBudget && leastRecent != null) {
+            MemoryEntry oldest = leastRecent;
+            unlink(oldest);
+            memory.remove(oldest.key);
+            memorySize -= oldest.size;
+        }
+    }
+
+    /**
+     * The number of bytes of encoded image data the disk tier may hold
+     *
+     * @return the diskBudget
+     */
+    public int getDiskBudget() {
+        return diskBudget;
+    }
+
+    /**
+     * The number of bytes of encoded image data the disk tier may hold, the budget
+     * is enforced when the next image is added
+     *
+     * @param diskBudget the diskBudget to set
+     */
+    public void setDiskBudget(int diskBudget) {
+        this.diskBudget = diskBudget;
+    }
+
+    /**
+     * The age in milliseconds after which an entry is considered stale, -1
+     * indicates entries never expire
+     *
+     * @return the maxAge
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * The age in milliseconds after which an entry is considered stale, -1
+     * indicates entries never expire
+     *
+     * @param maxAge the maxAge to set
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * The number of lookups served from the memory tier
+     *
+     * @return the memory hit count
+     */
+    public int getMemoryHitCount() {
+        return memoryHits;
+    }
+
+    /**
+     * The number of lookups served from the disk tier
+     *
+     * @return the disk hit count
+     */
+    public int getDiskHitCount() {
+        return diskHits;
+    }
+
+    /**
+     * The number of lookups that were served by neither tier
+     *
+     * @return the miss count
+     */
+    public int getMissCount() {
+        return misses;
+    }
+
+    /**
+     * The ratio of lookups served from the memory tier
+     *
+     * @return value between 0 and 1
+     */
+    public float getMemoryHitRate() {
+        return hitRate(memoryHits);
+    }
+
+    /**
+     * The ratio of lookups served from the disk tier
+     *
+     * @return value between 0 and 1
+     */
+    public float getDiskHitRate() {
+        return hitRate(diskHits);
+    }
+
+    private float hitRate(int hits) {
+        int total = memoryHits + diskHits + misses;
+        if(total == 0) {
+            return 0;
+        }
+        return ((float)hits) / ((float)total);
+    }
+
+    /**
+     * Resets the hit and miss counters
+     */
+    public void resetStatistics() {
+        memoryHits = 0;
+        diskHits = 0;
+        misses = 0;
+    }
+
+    static class MemoryEntry {
+        String key;
+        Image image;
+        int size;
+        long created;
+        MemoryEntry previous;
+        MemoryEntry next;
+    }
+
+    static class DiskEntry {
+        String name;
+        int size;
+        long lastAccess;
+        long created;
+        String etag;
+    }
+}
@@ -37,9 +37,13 @@ import com.sun.lwuit.io.NetworkManager;
 import com.sun.lwuit.io.Storage;
 import com.sun.lwuit.io.ui.FileEncodedImage;
 import com.sun.lwuit.io.ui.StorageImage;
+import com.sun.lwuit.io.util.Util;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Hashtable;
+import java.util.Vector;
 
 /**
  * Simplifies the process of implementing an image link for labels and lists by
@@ -48,10 +52,23 @@ import java.util.Hashtable;
  * For the case of a Label this is seamless, in case of a List renderer the model
  * or the renderer must register itself as a listener and update the data when
  * the response arrives.
+ * <p>Requests created by the static factory methods for an image that is already
+ * being downloaded into the same destination are coalesced into the pending download.
+ * When streaming is enabled cached images are written directly into storage while
+ * downloading so the complete response never needs to reside in RAM.
  *
  * @author Shai Almog
  */
 public class ImageDownloadService extends ConnectionRequest {
+    private static boolean defaultStreaming;
+    private static ImageCache imageCache;
+
+    /**
+     * Requests that are currently queued or downloading keyed by URL and cache
+     * destination, duplicate requests are attached to the request in this table
+     */
+    private static final Hashtable inFlight = new Hashtable();
+
     private Label parentLabel;
     private EncodedImage result;
     private List targetList;
@@ -61,8 +78,60 @@ public class ImageDownloadService extends ConnectionRequest {
     private String destinationFile;
     private Dimension toScale;
     private String cacheId;
+    private boolean streaming = defaultStreaming;
+    private String inFlightKey;
+    private Vector coalesced;
+    private ImageCache cache;
+    private String etag;
+    private boolean revalidating;
+
+    /**
+     * Set when the failure handling of the connection request retried this request
+     */
+    private boolean retried;
 
+    /**
+     * Indicates whether images that are cached to storage or the file system are
+     * written directly from the network stream while downloading rather than being
+     * read fully into RAM first
+     *
+     * @return the defaultStreaming
+     */
+    public static boolean isDefaultStreaming() {
+        return defaultStreaming;
+    }
+
+    /**
+     * Indicates whether images that are cached to storage or the file system are
+     * written directly from the network stream while downloading rather than being
+     * read fully into RAM first
+     *
+     * @param aDefaultStreaming the defaultStreaming to set
+     */
+    public static void setDefaultStreaming(boolean aDefaultStreaming) {
+        defaultStreaming = aDefaultStreaming;
+    }
     
+    /**
+     * Installs a two level image cache that replaces the storage and file system
+     * caching of the static factory methods, when a cache is installed the cacheId
+     * and destination file arguments are ignored and images are keyed by URL.
+     *
+     * @param cache the image cache or null to use the cacheId/destination file
+     */
+    public static void setImageCache(ImageCache cache) {
+        imageCache = cache;
+    }
+
+    /**
+     * Returns the installed image cache or null
+     *
+     * @return the image cache
+     */
+    public static ImageCache getImageCache() {
+        return imageCache;
+    }
+
     /**
      * Accepts the url to bind to the list renderer, on completion the action listener
      * will be invoked with the image so a list can be updated with the data
@@ -123,7 +192,7 @@ public class ImageDownloadService extends ConnectionRequest {
      */
     public static void createImageToFileSystem(String url, List targetList, int targetOffset, 
             String targetKey, String destFile, Dimension toScale) {
-        Image im = cacheImage(null, destFile);
+        Image im = cacheImage(url, null, destFile);
         if (im != null) {
             Hashtable h = (Hashtable) targetList.getModel().getItemAt(targetOffset);
             if(toScale != null){
@@ -138,7 +207,7 @@ public class ImageDownloadService extends ConnectionRequest {
         i.cacheImages = true;
         i.destinationFile = destFile;
         i.toScale = toScale;
-        NetworkManager.getInstance().addToQueue(i);
+        addToQueue(i, destFile);
     }
 
     /**
@@ -157,7 +226,7 @@ public class ImageDownloadService extends ConnectionRequest {
      */
     public static void createImageToStorage(String url, List targetList, int targetOffset, 
             String targetKey, String cacheId, Dimension scale) {
-        Image im = cacheImage(cacheId, null);
+        Image im = cacheImage(url, cacheId, null);
         if (im != null) {
             Hashtable h = (Hashtable) targetList.getModel().getItemAt(targetOffset);
             if(scale != null){
@@ -172,7 +241,7 @@ public class ImageDownloadService extends ConnectionRequest {
         i.cacheImages = true;
         i.cacheId = cacheId;
         i.toScale = scale;
-        NetworkManager.getInstance().addToQueue(i);
+        addToQueue(i, cacheId);
     }
 
     /**
@@ -186,7 +255,7 @@ public class ImageDownloadService extends ConnectionRequest {
      * @param toScale the scale dimension or null
      */
     public static void createImageToStorage(String url, Label l, String cacheId, Dimension toScale) {
-        Image im = cacheImage(cacheId, null);
+        Image im = cacheImage(url, cacheId, null);
         if (im != null) {
             if(toScale != null){
                 im = im.scaled(toScale.getWidth(), toScale.getHeight());
@@ -201,7 +270,7 @@ public class ImageDownloadService extends ConnectionRequest {
         i.cacheImages = true;
         i.toScale = toScale;
         i.cacheId = cacheId;
-        NetworkManager.getInstance().addToQueue(i);
+        addToQueue(i, cacheId);
     }
 
     /**
@@ -214,7 +283,7 @@ public class ImageDownloadService extends ConnectionRequest {
      */
     public static void createImageToFileSystem(String url, ActionListener callback, String destFile) {
 
-        Image im = cacheImage(null, destFile);
+        Image im = cacheImage(url, null, destFile);
         if (im != null) {
             callback.actionPerformed(new NetworkEvent(null, im));
             return;
@@ -223,7 +292,7 @@ public class ImageDownloadService extends ConnectionRequest {
         ImageDownloadService i = new ImageDownloadService(url, callback);
         i.cacheImages = true;
         i.destinationFile = destFile;
-        NetworkManager.getInstance().addToQueue(i);
+        addToQueue(i, destFile);
     }
 
     /**
@@ -236,7 +305,7 @@ public class ImageDownloadService extends ConnectionRequest {
      */
     public static void createImageToStorage(String url, ActionListener callback, String cacheId) {
 
-        Image im = cacheImage(cacheId, null);
+        Image im = cacheImage(url, cacheId, null);
         if (im != null) {
             callback.actionPerformed(new NetworkEvent(null, im));
             return;
@@ -245,11 +314,14 @@ public class ImageDownloadService extends ConnectionRequest {
         ImageDownloadService i = new ImageDownloadService(url, callback);
         i.cacheImages = true;
         i.cacheId = cacheId;
-        NetworkManager.getInstance().addToQueue(i);
+        addToQueue(i, cacheId);
     }
 
-    private static Image cacheImage(String cacheKey, String destFile) {
-        
+    private static Image cacheImage(String url, String cacheKey, String destFile) {
+        ImageCache c = imageCache;
+        if(c != null) {
+            return c.get(url);
+        }
         if (destFile != null) {
             if (FileSystemStorage.getInstance().exists(destFile)) {
                 FileEncodedImage f = FileEncodedImage.create(destFile, -1, -1);
@@ -264,19 +336,119 @@ public class ImageDownloadService extends ConnectionRequest {
         return null;
     }
 
+    /**
+     * Adds the request to the network queue unless the same image is already being
+     * downloaded into the same destination, in which case the request is attached to
+     * the pending download and receives its result
+     */
+    private static void addToQueue(ImageDownloadService i, String destination) {
+        String key = i.getUrl() + '|' + destination;
+        synchronized(inFlight) {
+            ImageDownloadService pending = (ImageDownloadService)inFlight.get(key);
+            if(pending != null) {
+                if(pending.coalesced == null) {
+                    pending.coalesced = new Vector();
+                }
+                pending.coalesced.addElement(i);
+                return;
+            }
+            i.inFlightKey = key;
+            inFlight.put(key, i);
+        }
+        queue(i);
+    }
+
+    /**
+     * Adds a request that was registered in the in flight table to the network queue
+     */
+    private static void queue(ImageDownloadService i) {
+        i.cache = imageCache;
+        if(i.cache != null) {
+            String expiredETag = i.cache.getExpiredETag(i.getUrl());
+            if(expiredETag != null) {
+                i.addRequestHeader("If-None-Match", expiredETag);
+                i.revalidating = true;
+            }
+        }
+
+        // duplicates are coalesced above so the network manager must not discard a
+        // request just because a different component asked for the same URL
+        i.setDuplicateSupported(true);
+        NetworkManager.getInstance().addToQueue(i);
+    }
+
+    /**
+     * Removes this request from the in flight table so new requests for the same
+     * image are queued rather than attached to this one
+     */
+    private void releaseInFlight() {
+        synchronized(inFlight) {
+            if(inFlightKey != null) {
+                inFlight.remove(inFlightKey);
+                inFlightKey = null;
+            }
+        }
+    }
+
+    /**
+     * Removes this request from the in flight table and returns the requests that
+     * were coalesced into it or null
+     */
+    private Vector releaseCoalesced() {
+        synchronized(inFlight) {
+            releaseInFlight();
+            Vector attached = coalesced;
+            coalesced = null;
+            return attached;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void readHeaders(Object connection) throws IOException {
+        if(cache != null) {
+            etag = getHeader(connection, "ETag");
+        }
+    }
+
     /**
      * @inheritDoc
      */
     protected void readResponse(InputStream input) throws IOException  {
+        result = null;
+        if(cacheImages && cache != null) {
+            Image image;
+            if(streaming && getContentLength() > 0) {
+                image = cache.put(getUrl(), input, getContentLength(), etag);
+                result = cachedResult(null);
+            } else {
+                byte[] data = EncodedImage.create(input).getImageData();
+                image = cache.put(getUrl(), data, etag);
+                result = cachedResult(data);
+            }
+            complete(image);
+            return;
+        }
         if(cacheImages) {
             if(destinationFile != null) {
-                result = FileEncodedImage.create(destinationFile, input, -1, -1);
+                if(streaming) {
+                    result = streamToFileSystem(input);
+                } else {
+                    result = FileEncodedImage.create(destinationFile, input, -1, -1);
+                }
             } else {
-                EncodedImage e = EncodedImage.create(input);
-                result = StorageImage.create(cacheId, e.getImageData(), -1, -1);
-                //if the storage has failed create the image from the stream
-                if(result == null){
-                    result = e;
+                // the storage format requires the length up front so we can only stream
+                // when the server provided a content length
+                if(streaming && getContentLength() > 0) {
+                    result = streamToStorage(input, getContentLength());
+                } else {
+                    EncodedImage e = EncodedImage.create(input);
+                    result = StorageImage.create(cacheId, e.getImageData(), -1, -1);
+                    //if the storage has failed create the image from the stream
+                    if(result == null){
+                        result = e;
+                    }
                 }
             }
         } else {
@@ -286,8 +458,49 @@ public class ImageDownloadService extends ConnectionRequest {
         
         // trigger an exception in case of an invalid image
         result.getWidth();
-        Image image = result;
+        complete(result);
+    }
 
+    /**
+     * Returns an encoded image holding its own copy of the data so it stays valid
+     * when the disk tier of the cache evicts the entry, the data is read back from
+     * the cache when it isn't given. Returns null if the entry was already evicted.
+     */
+    private EncodedImage cachedResult(byte[] data) {
+        if(data == null) {
+            data = cache.getData(getUrl());
+            if(data == null) {
+                return null;
+            }
+        }
+        return EncodedImage.create(data);
+    }
+
+    /**
+     * Installs the image into this request's target and into the targets of all
+     * the requests that were coalesced into this one
+     */
+    private void complete(Image image) {
+        Vector attached = releaseCoalesced();
+        updateTarget(image);
+        if(attached != null) {
+            int size = attached.size();
+            for(int iter = 0 ; iter < size ; iter++) {
+                ImageDownloadService current = (ImageDownloadService)attached.elementAt(iter);
+                if(current.isKilled()) {
+                    continue;
+                }
+                current.result = result;
+                current.updateTarget(image);
+            }
+        }
+    }
+
+    /**
+     * Installs the result into the label or list bound to this request or fires
+     * the response listeners
+     */
+    private void updateTarget(Image image) {
         if (toScale != null) {
             image = image.scaled(toScale.getWidth(), toScale.getHeight());
         }
@@ -321,6 +534,190 @@ public class ImageDownloadService extends ConnectionRequest {
         fireResponseListener(new NetworkEvent(this, result));
     }
 
+    /**
+     * Writes the response directly into the destination file, the image is decoded
+     * from the file when needed. When the image is scaled the encoded data isn't
+     * kept in RAM since only the scaled instance is used.
+     */
+    private EncodedImage streamToFileSystem(InputStream input) throws IOException {
+        OutputStream out = null;
+        boolean success = false;
+        try {
+            out = FileSystemStorage.getInstance().openOutputStream(destinationFile);
+            copy(input, out, -1);
+            out.close();
+            success = true;
+        } finally {
+            if(!success) {
+                Util.cleanup(out);
+                FileSystemStorage.getInstance().delete(destinationFile);
+            }
+        }
+        return FileEncodedImage.create(destinationFile, -1, -1, toScale == null);
+    }
+
+    /**
+     * Writes the response directly into storage using the byte array format of
+     * Storage.writeObject so StorageImage can read the data back
+     */
+    private EncodedImage streamToStorage(InputStream input, int length) throws IOException {
+        DataOutputStream out = null;
+        boolean success = false;
+        try {
+            out = new DataOutputStream(Storage.getInstance().createOutputStream(cacheId));
+            out.writeBoolean(true);
+            out.writeUTF("ByteArray");
+            out.writeInt(length);
+            copy(input, out, length);
+            out.close();
+            success = true;
+        } finally {
+            if(!success) {
+                Util.cleanup(out);
+                Storage.getInstance().deleteStorageFile(cacheId);
+            }
+        }
+        return StorageImage.create(cacheId, -1, -1, toScale == null);
+    }
+
+    /**
+     * Copies length bytes (or everything when length is -1) from the input to the 
+     * output without closing the input stream which belongs to the connection
+     */
+    private static void copy(InputStream input, OutputStream out, int length) throws IOException {
+        byte[] buffer = new byte[4096];
+        int remaining = length;
+        while(remaining != 0) {
+            int size = buffer.length;
+            if(remaining > 0 && remaining < size) {
+                size = remaining;
+            }
+            size = input.read(buffer, 0, size);
+            if(size < 0) {
+                if(remaining > 0) {
+                    throw new IOException("Image data ended before the content length was reached");
+                }
+                return;
+            }
+            out.write(buffer, 0, size);
+            if(remaining > 0) {
+                remaining -= size;
+            }
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void handleException(Exception err) {
+        // only this request shows the error, the attached requests stay attached if
+        // it is retried
+        retried = false;
+        super.handleException(err);
+        if(!retried) {
+            Vector attached = releaseCoalesced();
+            if(attached != null) {
+                int size = attached.size();
+                for(int iter = 0 ; iter < size ; iter++) {
+                    ImageDownloadService current = (ImageDownloadService)attached.elementAt(iter);
+                    if(!current.isKilled()) {
+                        current.fireErrorListener(err);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected void handleErrorResponseCode(int code, String message) {
+        // the server confirmed our expired copy is still valid
+        if(code == 304 && revalidating) {
+            Image image = cache.revalidated(getUrl());
+            if(image != null) {
+                result = cachedResult(null);
+                complete(image);
+                return;
+            }
+        }
+        retried = false;
+        super.handleErrorResponseCode(code, message);
+        if(!retried) {
+            Vector attached = releaseCoalesced();
+            if(attached != null) {
+                int size = attached.size();
+                for(int iter = 0 ; iter < size ; iter++) {
+                    ImageDownloadService current = (ImageDownloadService)attached.elementAt(iter);
+                    if(!current.isKilled()) {
+                        current.fireResponseCodeListener(code, message);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void retry() {
+        retried = true;
+        super.retry();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void kill() {
+        // the first request attached to this one takes over the download on behalf
+        // of the remaining requests
+        ImageDownloadService promoted = null;
+        synchronized(inFlight) {
+            String key = inFlightKey;
+            Vector attached = releaseCoalesced();
+            if(key != null && attached != null) {
+                while(attached.size() > 0 && promoted == null) {
+                    ImageDownloadService current = (ImageDownloadService)attached.elementAt(0);
+                    attached.removeElementAt(0);
+                    if(!current.isKilled()) {
+                        promoted = current;
+                    }
+                }
+                if(promoted != null) {
+                    if(attached.size() > 0) {
+                        promoted.coalesced = attached;
+                    }
+                    promoted.inFlightKey = key;
+                    inFlight.put(key, promoted);
+                }
+            }
+        }
+        super.kill();
+        if(promoted != null) {
+            queue(promoted);
+        }
+    }
+
+    /**
+     * Indicates whether the image is written directly from the network stream into
+     * storage or the file system while downloading, this only applies to cached images
+     *
+     * @return the streaming
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Indicates whether the image is written directly from the network stream into
+     * storage or the file system while downloading, this only applies to cached images
+     *
+     * @param streaming the streaming to set
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     /**
      * Returns the image returned from the server, this method is useful for renderers
      *
@@ -390,9 +390,7 @@ public class Util {
             }
             if ("ByteArray".equals(type)) {
                 byte[] v = new byte[input.readInt()];
-                for (int iter = 0; iter < v.length; iter++) {
-                    v[iter] = input.readByte();
-                }
+                input.readFully(v);
                 return v;
             }
             if ("LongArray".equals(type)) {
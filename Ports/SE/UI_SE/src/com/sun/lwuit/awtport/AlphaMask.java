@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.awtport;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * An 8 bit coverage mask used for bitmap font glyphs. The mask pixels are kept
+ * once in a byte raster and every color is drawn through a 256 entry index color
+ * model that maps the coverage to the alpha of the requested color, so changing
+ * the color never touches the pixel data.
+ */
+class AlphaMask {
+    private static final int COLOR_CACHE_SIZE = 8;
+
+    private WritableRaster raster;
+    private int[] colors = new int[COLOR_CACHE_SIZE];
+    private BufferedImage[] images = new BufferedImage[COLOR_CACHE_SIZE];
+    private int count;
+
+    /**
+     * Creates a mask from the alpha channel of the given ARGB data
+     *
+     * @param argb the pixel data
+     * @param width the width of the mask
+     * @param height the height of the mask
+     */
+    public AlphaMask(int[] argb, int width, int height) {
+        raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, width, height, 1, null);
+        byte[] data = ((DataBufferByte)raster.getDataBuffer()).getData();
+        int len = width * height;
+        for(int iter = 0 ; iter < len ; iter++) {
+            data[iter] = (byte)(argb[iter] >>> 24);
+        }
+    }
+
+    /**
+     * Returns an image that shares the mask pixels and paints them in the given
+     * color, the most recently used colors are kept so alternating between a
+     * selected and unselected color doesn't create new color models
+     *
+     * @param color the RGB color of the glyphs
+     * @return image that can be drawn directly
+     */
+    public BufferedImage getImage(int color) {
+        color &= 0xffffff;
+        for(int iter = 0 ; iter < count ; iter++) {
+            if(colors[iter] == color) {
+                BufferedImage img = images[iter];
+                if(iter > 0) {
+                    System.arraycopy(colors, 0, colors, 1, iter);
+                    System.arraycopy(images, 0, images, 1, iter);
+                    colors[0] = color;
+                    images[0] = img;
+                }
+                return img;
+            }
+        }
+        byte[] r = new byte[256];
+        byte[] g = new byte[256];
+        byte[] b = new byte[256];
+        byte[] a = new byte[256];
+        byte red = (byte)(color >> 16);
+        byte green = (byte)(color >> 8);
+        byte blue = (byte)color;
+        for(int iter = 0 ; iter < 256 ; iter++) {
+            r[iter] = red;
+            g[iter] = green;
+            b[iter] = blue;
+            a[iter] = (byte)iter;
+        }
+        IndexColorModel model = new IndexColorModel(8, 256, r, g, b, a);
+        BufferedImage img = new BufferedImage(model, raster, false, null);
+        int shift = Math.min(count, COLOR_CACHE_SIZE - 1);
+        System.arraycopy(colors, 0, colors, 1, shift);
+        System.arraycopy(images, 0, images, 1, shift);
+        colors[0] = color;
+        images[0] = img;
+        if(count < COLOR_CACHE_SIZE) {
+            count++;
+        }
+        return img;
+    }
+}
@@ -27,6 +27,7 @@ import com.sun.lwuit.Component;
 import com.sun.lwuit.Display;
 import com.sun.lwuit.Font;
 import com.sun.lwuit.Form;
+import com.sun.lwuit.RGBView;
 import com.sun.lwuit.impl.LWUITImplementation;
 import java.awt.AlphaComposite;
 import java.awt.Color;
@@ -51,6 +52,10 @@ import java.awt.event.WindowStateListener;
 import java.awt.font.FontRenderContext;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
@@ -59,6 +64,10 @@ import java.lang.ref.SoftReference;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.imageio.ImageIO;
 import javax.imageio.stream.MemoryCacheImageInputStream;
 import javax.sound.sampled.AudioFormat;
@@ -84,11 +93,28 @@ public class AwtImpl extends LWUITImplementation {
     private static int softkeyCount = 1;
     private static boolean tablet;
     private static String DEFAULT_FONT = "Arial-plain-11";
+
+    /**
+     * AWT fonts created for LWUIT system fonts, font lookups and derived truetype
+     * fonts. Decoding a font is expensive and the font of a component is resolved
+     * on every paint and measurement. The least recently used fonts are discarded
+     * once the cache holds FONT_CACHE_SIZE fonts.
+     */
+    private static final int FONT_CACHE_SIZE = 64;
+    private static final HashMap fontCache = new LinkedHashMap(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > FONT_CACHE_SIZE;
+        }
+    };
+
     public static void setFontSize(int medium, int small, int large) {
         medianFontSize = medium;
         smallFontSize = small;
         largeFontSize = large;
         DEFAULT_FONT = "Arial-plain-" + medium;
+        synchronized(fontCache) {
+            fontCache.clear();
+        }
     }
 
     /**
@@ -550,6 +576,24 @@ public class AwtImpl extends LWUITImplementation {
         ((BufferedImage)nativeImage).getRGB(x, y, width, height, arr, offset, width);
     }
 
+    /**
+     * @inheritDoc
+     */
+    public RGBView getRGBView(Object nativeImage) {
+        BufferedImage image = (BufferedImage)nativeImage;
+        if(image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            return null;
+        }
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        if(!(buffer instanceof DataBufferInt) || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+            return null;
+        }
+        int stride = ((SinglePixelPackedSampleModel)raster.getSampleModel()).getScanlineStride();
+        int offset = buffer.getOffset() - raster.getSampleModelTranslateX() - raster.getSampleModelTranslateY() * stride;
+        return new RGBView(((DataBufferInt)buffer).getData(), offset, stride, image.getWidth(), image.getHeight(), true);
+    }
+
     /**
      * @inheritDoc
      */
@@ -648,45 +692,20 @@ public class AwtImpl extends LWUITImplementation {
      * @inheritDoc
      */
     public Object scale(Object nativeImage, int width, int height) {
+        return scale(nativeImage, width, height, com.sun.lwuit.Image.SCALE_NEAREST);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object scale(Object nativeImage, int width, int height, int quality) {
         BufferedImage image = (BufferedImage)nativeImage;
-        int srcWidth = image.getWidth();
-        int srcHeight = image.getHeight();
 
         // no need to scale
-        if(srcWidth == width && srcHeight == height){
+        if(image.getWidth() == width && image.getHeight() == height){
             return image;
         }
-
-        int[] currentArray = new int[srcWidth];
-        int[] destinationArray = new int[width * height];
-        scaleArray(image, srcWidth, srcHeight, height, width, currentArray, destinationArray);
-
-        return createImage(destinationArray, width, height);
-    }
-
-    private void scaleArray(BufferedImage currentImage, int srcWidth, int srcHeight, int height, int width, int[] currentArray, int[] destinationArray) {
-        // Horizontal Resize
-        int yRatio = (srcHeight << 16) / height;
-        int xRatio = (srcWidth << 16) / width;
-        int xPos = xRatio / 2;
-        int yPos = yRatio / 2;
-
-        // if there is more than 16bit color there is no point in using mutable
-        // images since they won't save any memory
-        for (int y = 0; y < height; y++) {
-            int srcY = yPos >> 16;
-            getRGB(currentImage, currentArray, 0, 0, srcY, srcWidth, 1);
-            for (int x = 0; x < width; x++) {
-                int srcX = xPos >> 16;
-                int destPixel = x + y * width;
-                if ((destPixel >= 0 && destPixel < destinationArray.length) && (srcX < currentArray.length)) {
-                    destinationArray[destPixel] = currentArray[srcX];
-                }
-                xPos += xRatio;
-            }
-            yPos += yRatio;
-            xPos = xRatio / 2;
-        }
+        return ImageScaler.scale(image, width, height, quality);
     }
 
     private static int round(double d) {
@@ -1019,6 +1038,21 @@ public class AwtImpl extends LWUITImplementation {
         nativeGraphics.drawImage((BufferedImage)img, x, y, null);
     }
 
+    /**
+     * @inheritDoc
+     */
+    public Object createAlphaMask(int[] argb, int width, int height) {
+        return new AlphaMask(argb, width, height);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void drawAlphaMask(Object graphics, Object mask, int x, int y, int color) {
+        Graphics2D nativeGraphics = getGraphics(graphics);
+        nativeGraphics.drawImage(((AlphaMask)mask).getImage(color), x, y, null);
+    }
+
 
     /**
      * @inheritDoc
@@ -1085,21 +1119,24 @@ public class AwtImpl extends LWUITImplementation {
      * @inheritDoc
      */
     public int charsWidth(Object nativeFont, char[] ch, int offset, int length) {
-        return stringWidth(nativeFont, new String(ch, offset, length));
+        java.awt.Font f = font(nativeFont);
+        return GlyphAdvances.get(f, canvas.getFRC()).charsWidth(f, ch, offset, length);
     }
 
     /**
      * @inheritDoc
      */
     public int stringWidth(Object nativeFont, String str) {
-        return (int)Math.ceil(font(nativeFont).getStringBounds(str, canvas.getFRC()).getWidth());
+        java.awt.Font f = font(nativeFont);
+        return GlyphAdvances.get(f, canvas.getFRC()).stringWidth(f, str);
     }
 
     /**
      * @inheritDoc
      */
     public int charWidth(Object nativeFont, char ch) {
-        return (int)Math.ceil(font(nativeFont).getStringBounds("" + ch, canvas.getFRC()).getWidth());
+        java.awt.Font f = font(nativeFont);
+        return GlyphAdvances.get(f, canvas.getFRC()).charWidth(f, ch);
     }
 
     /**
@@ -1227,22 +1264,85 @@ public class AwtImpl extends LWUITImplementation {
 
     private java.awt.Font font(Object f) {
         if(f == null) {
-            return java.awt.Font.decode(DEFAULT_FONT);
+            return decodeFont(DEFAULT_FONT);
         }
         // for bitmap fonts
         if(f instanceof java.awt.Font) {
             return (java.awt.Font)f;
         }
-        return createAWTFont((int[])f);
+        int[] i = (int[])f;
+        Integer key = new Integer((i[0] << 16) | (i[1] << 8) | i[2]);
+        synchronized(fontCache) {
+            java.awt.Font awtFont = (java.awt.Font)fontCache.get(key);
+            if(awtFont == null) {
+                awtFont = createAWTFont(i);
+                fontCache.put(key, awtFont);
+            }
+            return awtFont;
+        }
+    }
+
+    private java.awt.Font decodeFont(String name) {
+        synchronized(fontCache) {
+            java.awt.Font awtFont = (java.awt.Font)fontCache.get(name);
+            if(awtFont == null) {
+                awtFont = java.awt.Font.decode(name);
+                fontCache.put(name, awtFont);
+            }
+            return awtFont;
+        }
+    }
+
+    /**
+     * Returns a font derived from the given font in the given style and size, derived
+     * fonts are cached so the same font isn't created for every request
+     *
+     * @param base the font to derive from
+     * @param style the AWT font style
+     * @param size the size of the font in points
+     * @return the derived font
+     */
+    public static java.awt.Font deriveFont(java.awt.Font base, int style, float size) {
+        if(base.getStyle() == style && base.getSize2D() == size) {
+            return base;
+        }
+        java.util.List key = Arrays.asList(new Object[] {base, new Integer(style), new Float(size)});
+        synchronized(fontCache) {
+            java.awt.Font awtFont = (java.awt.Font)fontCache.get(key);
+            if(awtFont == null) {
+                awtFont = base.deriveFont(style, size);
+                fontCache.put(key, awtFont);
+            }
+            return awtFont;
+        }
     }
 
     /**
      * @inheritDoc
      */
     public Object loadNativeFont(String lookup) {
-        return java.awt.Font.decode(lookup.split(";")[0]);
+        return decodeFont(lookup.split(";")[0]);
    }
 
+    /**
+     * @inheritDoc
+     */
+    public boolean isTrueTypeSupported() {
+        return true;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public Object loadTrueTypeFont(InputStream stream) throws IOException {
+        try {
+            java.awt.Font f = java.awt.Font.createFont(java.awt.Font.TRUETYPE_FONT, stream);
+            return deriveFont(f, java.awt.Font.PLAIN, medianFontSize);
+        } catch(java.awt.FontFormatException err) {
+            throw new IOException(err.toString());
+        }
+    }
+
     /**
      * @inheritDoc
      */
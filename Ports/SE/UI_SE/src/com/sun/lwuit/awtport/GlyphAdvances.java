@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.awtport;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Advance widths of the characters of an AWT font kept in arrays so width queries
+ * don't go through the font metrics on every call. The table is split into pages
+ * of 256 characters that are only allocated and measured for the character ranges
+ * that are actually used. Text containing characters that are shaped in context
+ * (combining marks, RTL and Indic scripts etc.) is measured by AWT as a whole.
+ * Tables are weakly keyed by their font and don't reference it so they are
+ * collected along with the font, the font is passed to every query instead.
+ */
+class GlyphAdvances {
+    private static final Map TABLES = new WeakHashMap();
+
+    private FontRenderContext frc;
+    private float[][] pages = new float[256][];
+
+    private GlyphAdvances(FontRenderContext frc) {
+        this.frc = frc;
+    }
+
+    /**
+     * Returns the advance table for the given font creating it if necessary, the
+     * table is discarded when the render context changes
+     *
+     * @param font the AWT font
+     * @param frc the render context in which the text is measured
+     * @return the advance table
+     */
+    public static synchronized GlyphAdvances get(Font font, FontRenderContext frc) {
+        GlyphAdvances g = (GlyphAdvances)TABLES.get(font);
+        if(g == null) {
+            g = new GlyphAdvances(frc);
+            TABLES.put(font, g);
+        } else if(!g.frc.equals(frc)) {
+            g.frc = frc;
+            g.pages = new float[256][];
+        }
+        return g;
+    }
+
+    /**
+     * Returns true if the width of the character depends on the surrounding text
+     */
+    private static boolean isContextual(char c) {
+        if(c < 0x300) {
+            return false;
+        }
+        return (c <= 0x36f) ||
+                (c >= 0x590 && c <= 0x109f) ||
+                (c >= 0x1780 && c <= 0x17ff) ||
+                (c >= 0x200c && c <= 0x200f) ||
+                (c >= 0x202a && c <= 0x202e) ||
+                (c >= 0xd800 && c <= 0xdfff) ||
+                (c >= 0xfb1d && c <= 0xfeff);
+    }
+
+    private float advance(Font font, char c) {
+        float[] page = pages[c >> 8];
+        if(page == null) {
+            page = new float[256];
+            for(int iter = 0 ; iter < 256 ; iter++) {
+                page[iter] = -1;
+            }
+            pages[c >> 8] = page;
+        }
+        float a = page[c & 0xff];
+        if(a < 0) {
+            a = (float)font.getStringBounds(String.valueOf(c), frc).getWidth();
+            page[c & 0xff] = a;
+        }
+        return a;
+    }
+
+    /**
+     * Returns the width of a single character
+     *
+     * @param font the font this table was returned for
+     * @param c the character
+     * @return the width in pixels
+     */
+    public synchronized int charWidth(Font font, char c) {
+        return (int)Math.ceil(advance(font, c));
+    }
+
+    /**
+     * Returns the width of the given string
+     *
+     * @param font the font this table was returned for
+     * @param str the string
+     * @return the width in pixels
+     */
+    public synchronized int stringWidth(Font font, String str) {
+        int len = str.length();
+        float w = 0;
+        for(int iter = 0 ; iter < len ; iter++) {
+            char c = str.charAt(iter);
+            if(isContextual(c)) {
+                return (int)Math.ceil(font.getStringBounds(str, frc).getWidth());
+            }
+            w += advance(font, c);
+        }
+        return (int)Math.ceil(w);
+    }
+
+    /**
+     * Returns the width of the given characters
+     *
+     * @param font the font this table was returned for
+     * @param ch the characters
+     * @param offset the offset of the first character
+     * @param length the number of characters
+     * @return the width in pixels
+     */
+    public synchronized int charsWidth(Font font, char[] ch, int offset, int length) {
+        int end = offset + length;
+        float w = 0;
+        for(int iter = offset ; iter < end ; iter++) {
+            char c = ch[iter];
+            if(isContextual(c)) {
+                return (int)Math.ceil(font.getStringBounds(ch, offset, end, frc).getWidth());
+            }
+            w += advance(font, c);
+        }
+        return (int)Math.ceil(w);
+    }
+}
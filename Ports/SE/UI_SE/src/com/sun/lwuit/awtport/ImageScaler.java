@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.awtport;
+
+import com.sun.lwuit.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Scales images by working directly on the int pixel buffer of the raster rather
+ * than fetching rows through getRGB. Supports nearest neighbour, bilinear and area
+ * average scaling, large destination images are scaled in horizontal bands on all
+ * the available cores.
+ */
+class ImageScaler implements Runnable {
+    /**
+     * Destination images with fewer pixels than this are always scaled on the
+     * calling thread since the synchronization overhead isn't worth it
+     */
+    private static final int PARALLEL_THRESHOLD = 256 * 256;
+
+    private static ExecutorService executor;
+
+    private final int[] src;
+    private final int srcOffset;
+    private final int srcStride;
+    private final int srcWidth;
+    private final int srcHeight;
+    private final int alphaMask;
+    private final int[] dest;
+    private final int width;
+    private final int height;
+    private final int quality;
+
+    // per column/row source coordinates, for bilinear scaling these are the two
+    // sampled pixels and the weight of the second, for area average the covered range
+    private int[] x0;
+    private int[] x1;
+    private int[] xFraction;
+    private int[] y0;
+    private int[] y1;
+    private int[] yFraction;
+
+    // the band of destination rows processed by run()
+    private int fromY;
+    private int toY;
+    private CountDownLatch done;
+
+    private ImageScaler(int[] src, int srcOffset, int srcStride, int srcWidth, int srcHeight, int alphaMask, 
+            int[] dest, int width, int height, int quality) {
+        this.src = src;
+        this.srcOffset = srcOffset;
+        this.srcStride = srcStride;
+        this.srcWidth = srcWidth;
+        this.srcHeight = srcHeight;
+        this.alphaMask = alphaMask;
+        this.dest = dest;
+        this.width = width;
+        this.height = height;
+        this.quality = quality;
+    }
+
+    private ImageScaler(ImageScaler parent, int fromY, int toY, CountDownLatch done) {
+        this(parent.src, parent.srcOffset, parent.srcStride, parent.srcWidth, parent.srcHeight, parent.alphaMask,
+                parent.dest, parent.width, parent.height, parent.quality);
+        x0 = parent.x0;
+        x1 = parent.x1;
+        xFraction = parent.xFraction;
+        y0 = parent.y0;
+        y1 = parent.y1;
+        yFraction = parent.yFraction;
+        this.fromY = fromY;
+        this.toY = toY;
+        this.done = done;
+    }
+
+    /**
+     * Scales the given image to the given size
+     *
+     * @param source the source image
+     * @param width the destination width
+     * @param height the destination height
+     * @param quality one of the Image.SCALE_* constants
+     * @return a new ARGB image
+     */
+    static BufferedImage scale(BufferedImage source, int width, int height, int quality) {
+        int srcWidth = source.getWidth();
+        int srcHeight = source.getHeight();
+        BufferedImage destImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] dest = ((DataBufferInt)destImage.getRaster().getDataBuffer()).getData();
+
+        // area averaging is meaningless when enlarging in both axis
+        if(quality == Image.SCALE_AREA_AVERAGE && width >= srcWidth && height >= srcHeight) {
+            quality = Image.SCALE_BILINEAR;
+        }
+
+        ImageScaler s;
+        WritableRaster raster = source.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        int type = source.getType();
+        if((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) &&
+                buffer instanceof DataBufferInt && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            // use the pixels in place, the sample model translation is non zero for sub images
+            int stride = ((SinglePixelPackedSampleModel)raster.getSampleModel()).getScanlineStride();
+            int offset = buffer.getOffset() - raster.getSampleModelTranslateX() - raster.getSampleModelTranslateY() * stride;
+            int alphaMask = 0;
+            if(type == BufferedImage.TYPE_INT_RGB) {
+                alphaMask = 0xff000000;
+            }
+            s = new ImageScaler(((DataBufferInt)buffer).getData(), offset, stride, srcWidth, srcHeight, alphaMask,
+                    dest, width, height, quality);
+        } else {
+            int[] pixels = source.getRGB(0, 0, srcWidth, srcHeight, null, 0, srcWidth);
+            s = new ImageScaler(pixels, 0, srcWidth, srcWidth, srcHeight, 0, dest, width, height, quality);
+        }
+        s.scale();
+        return destImage;
+    }
+
+    private void scale() {
+        switch(quality) {
+            case Image.SCALE_BILINEAR:
+                x0 = new int[width];
+                x1 = new int[width];
+                xFraction = new int[width];
+                initBilinear(srcWidth, width, x0, x1, xFraction);
+                y0 = new int[height];
+                y1 = new int[height];
+                yFraction = new int[height];
+                initBilinear(srcHeight, height, y0, y1, yFraction);
+                break;
+            case Image.SCALE_AREA_AVERAGE:
+                x0 = new int[width];
+                x1 = new int[width];
+                initArea(srcWidth, width, x0, x1);
+                y0 = new int[height];
+                y1 = new int[height];
+                initArea(srcHeight, height, y0, y1);
+                break;
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        if(processors < 2 || width * height < PARALLEL_THRESHOLD) {
+            scaleRows(0, height);
+            return;
+        }
+        int bands = Math.min(processors, height);
+        CountDownLatch latch = new CountDownLatch(bands - 1);
+        int bandHeight = height / bands;
+        ExecutorService e = getExecutor(processors);
+        for(int iter = 1 ; iter < bands ; iter++) {
+            int end = height;
+            if(iter < bands - 1) {
+                end = (iter + 1) * bandHeight;
+            }
+            e.execute(new ImageScaler(this, iter * bandHeight, end, latch));
+        }
+
+        // the calling thread processes the first band
+        scaleRows(0, bandHeight);
+        try {
+            latch.await();
+        } catch(InterruptedException err) {
+            err.printStackTrace();
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor(int processors) {
+        if(executor == null) {
+            executor = Executors.newFixedThreadPool(processors - 1, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "LWUIT Image Scaler");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Scales a band of rows on a worker thread
+     */
+    public void run() {
+        try {
+            scaleRows(fromY, toY);
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private static void initBilinear(int srcSize, int destSize, int[] p0, int[] p1, int[] fraction) {
+        // map the destination pixel center into the source in 16.16 fixed point
+        for(int iter = 0 ; iter < destSize ; iter++) {
+            long pos = (((long)(2 * iter + 1) * srcSize) << 16) / (2 * destSize) - 0x8000;
+            if(pos < 0) {
+                pos = 0;
+            }
+            int p = (int)(pos >> 16);
+            if(p >= srcSize - 1) {
+                p0[iter] = srcSize - 1;
+                p1[iter] = srcSize - 1;
+                fraction[iter] = 0;
+            } else {
+                p0[iter] = p;
+                p1[iter] = p + 1;
+                fraction[iter] = (int)((pos >> 8) & 0xff);
+            }
+        }
+    }
+
+    private static void initArea(int srcSize, int destSize, int[] start, int[] end) {
+        for(int iter = 0 ; iter < destSize ; iter++) {
+            int s = (int)(((long)iter * srcSize) / destSize);
+            int e = (int)(((long)(iter + 1) * srcSize) / destSize);
+            start[iter] = Math.min(s, srcSize - 1);
+            end[iter] = Math.max(start[iter] + 1, Math.min(e, srcSize));
+        }
+    }
+
+    private void scaleRows(int from, int to) {
+        switch(quality) {
+            case Image.SCALE_BILINEAR:
+                bilinearRows(from, to);
+                break;
+            case Image.SCALE_AREA_AVERAGE:
+                areaRows(from, to);
+                break;
+            default:
+                nearestRows(from, to);
+                break;
+        }
+    }
+
+    private void nearestRows(int from, int to) {
+        long xRatio = (((long)srcWidth) << 16) / width;
+        long yRatio = (((long)srcHeight) << 16) / height;
+        int destPixel = from * width;
+        for(int y = from ; y < to ; y++) {
+            int srcY = Math.min((int)((yRatio / 2 + y * yRatio) >> 16), srcHeight - 1);
+            int row = srcOffset + srcY * srcStride;
+            long xPos = xRatio / 2;
+            for(int x = 0 ; x < width ; x++) {
+                dest[destPixel] = src[row + Math.min((int)(xPos >> 16), srcWidth - 1)] | alphaMask;
+                destPixel++;
+                xPos += xRatio;
+            }
+        }
+    }
+
+    private void bilinearRows(int from, int to) {
+        int destPixel = from * width;
+        for(int y = from ; y < to ; y++) {
+            int row0 = srcOffset + y0[y] * srcStride;
+            int row1 = srcOffset + y1[y] * srcStride;
+            int fy = yFraction[y];
+            for(int x = 0 ; x < width ; x++) {
+                int fx = xFraction[x];
+                int w00 = (256 - fx) * (256 - fy);
+                int w10 = fx * (256 - fy);
+                int w01 = (256 - fx) * fy;
+                int w11 = fx * fy;
+                int p00 = src[row0 + x0[x]] | alphaMask;
+                int p10 = src[row0 + x1[x]] | alphaMask;
+                int p01 = src[row1 + x0[x]] | alphaMask;
+                int p11 = src[row1 + x1[x]] | alphaMask;
+                int a00 = p00 >>> 24;
+                int a10 = p10 >>> 24;
+                int a01 = p01 >>> 24;
+                int a11 = p11 >>> 24;
+                if((a00 & a10 & a01 & a11) == 0xff) {
+                    // opaque fast path, weights add up to 65536
+                    int r = ((p00 >> 16 & 0xff) * w00 + (p10 >> 16 & 0xff) * w10 + (p01 >> 16 & 0xff) * w01 + (p11 >> 16 & 0xff) * w11) >> 16;
+                    int g = ((p00 >> 8 & 0xff) * w00 + (p10 >> 8 & 0xff) * w10 + (p01 >> 8 & 0xff) * w01 + (p11 >> 8 & 0xff) * w11) >> 16;
+                    int b = ((p00 & 0xff) * w00 + (p10 & 0xff) * w10 + (p01 & 0xff) * w01 + (p11 & 0xff) * w11) >> 16;
+                    dest[destPixel] = 0xff000000 | (r << 16) | (g << 8) | b;
+                } else {
+                    // weight the colors by their alpha so transparent pixels don't bleed into the result
+                    long aw00 = (long)a00 * w00;
+                    long aw10 = (long)a10 * w10;
+                    long aw01 = (long)a01 * w01;
+                    long aw11 = (long)a11 * w11;
+                    long a = aw00 + aw10 + aw01 + aw11;
+                    if(a == 0) {
+                        dest[destPixel] = 0;
+                    } else {
+                        int r = (int)(((p00 >> 16 & 0xff) * aw00 + (p10 >> 16 & 0xff) * aw10 + (p01 >> 16 & 0xff) * aw01 + (p11 >> 16 & 0xff) * aw11) / a);
+                        int g = (int)(((p00 >> 8 & 0xff) * aw00 + (p10 >> 8 & 0xff) * aw10 + (p01 >> 8 & 0xff) * aw01 + (p11 >> 8 & 0xff) * aw11) / a);
+                        int b = (int)(((p00 & 0xff) * aw00 + (p10 & 0xff) * aw10 + (p01 & 0xff) * aw01 + (p11 & 0xff) * aw11) / a);
+                        dest[destPixel] = ((int)(a >> 16) << 24) | (r << 16) | (g << 8) | b;
+                    }
+                }
+                destPixel++;
+            }
+        }
+    }
+
+    private void areaRows(int from, int to) {
+        int destPixel = from * width;
+        for(int y = from ; y < to ; y++) {
+            int startY = y0[y];
+            int endY = y1[y];
+            for(int x = 0 ; x < width ; x++) {
+                int startX = x0[x];
+                int endX = x1[x];
+                long a = 0;
+                long r = 0;
+                long g = 0;
+                long b = 0;
+                int count = 0;
+                for(int sy = startY ; sy < endY ; sy++) {
+                    int row = srcOffset + sy * srcStride;
+                    for(int sx = startX ; sx < endX ; sx++) {
+                        int p = src[row + sx] | alphaMask;
+                        int pa = p >>> 24;
+                        a += pa;
+                        r += (p >> 16 & 0xff) * pa;
+                        g += (p >> 8 & 0xff) * pa;
+                        b += (p & 0xff) * pa;
+                    }
+                    count += endX - startX;
+                }
+                if(a == 0) {
+                    dest[destPixel] = 0;
+                } else {
+                    dest[destPixel] = ((int)(a / count) << 24) | ((int)(r / a) << 16) | ((int)(g / a) << 8) | (int)(b / a);
+                }
+                destPixel++;
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import com.sun.lwuit.impl.LWUITImplementation;
+import java.util.Hashtable;
+
+/**
+ * Remembers the visual ordering of recently converted bidi strings along with the
+ * logical to visual cursor locations requested for them. Entries are keyed by the
+ * string content so a change to the text naturally results in a new entry and the
+ * least recently used entries are discarded once the cache is full.
+ */
+class BidiCache {
+    private Hashtable entries = new Hashtable();
+    private Entry mostRecent;
+    private Entry leastRecent;
+    private int maxSize;
+
+    BidiCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the visual ordering of the given logical string
+     */
+    synchronized String toVisual(LWUITImplementation impl, String s) {
+        Entry e = getEntry(s);
+        if(e == null) {
+            return impl.convertBidiLogicalToVisual(s);
+        }
+        if(e.visual == null) {
+            e.visual = impl.convertBidiLogicalToVisual(s);
+        }
+        return e.visual;
+    }
+
+    /**
+     * Returns the visual location of the given logical index within the string, the
+     * locations are resolved lazily and remembered per index
+     */
+    synchronized int getCharLocation(LWUITImplementation impl, String s, int index) {
+        Entry e = getEntry(s);
+        if(e == null || index < 0 || index > s.length()) {
+            return impl.getCharLocation(s, index);
+        }
+        if(e.locations == null) {
+            e.locations = new int[s.length() + 1];
+            e.resolved = new boolean[s.length() + 1];
+        }
+        if(!e.resolved[index]) {
+            e.locations[index] = impl.getCharLocation(s, index);
+            e.resolved[index] = true;
+        }
+        return e.locations[index];
+    }
+
+    synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        trim();
+    }
+
+    synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        mostRecent = null;
+        leastRecent = null;
+    }
+
+    private Entry getEntry(String s) {
+        if(maxSize <= 0) {
+            return null;
+        }
+        Entry e = (Entry)entries.get(s);
+        if(e == null) {
+            e = new Entry();
+            e.key = s;
+            entries.put(s, e);
+        } else {
+            if(e == mostRecent) {
+                return e;
+            }
+            unlink(e);
+        }
+        e.next = mostRecent;
+        if(mostRecent != null) {
+            mostRecent.previous = e;
+        }
+        mostRecent = e;
+        if(leastRecent == null) {
+            leastRecent = e;
+        }
+        trim();
+        return e;
+    }
+
+    private void trim() {
+        while(entries.size() > maxSize && leastRecent != null) {
+            Entry e = leastRecent;
+            unlink(e);
+            entries.remove(e.key);
+        }
+    }
+
+    private void unlink(Entry e) {
+        if(e.previous != null) {
+            e.previous.next = e.next;
+        } else {
+            mostRecent = e.next;
+        }
+        if(e.next != null) {
+            e.next.previous = e.previous;
+        } else {
+            leastRecent = e.previous;
+        }
+        e.previous = null;
+        e.next = null;
+    }
+
+    static class Entry {
+        String key;
+        String visual;
+        int[] locations;
+        boolean[] resolved;
+        Entry previous;
+        Entry next;
+    }
+}
@@ -132,6 +132,19 @@ public class Component implements Animation, StyleListener {
     private int scrollY;
     private boolean sizeRequestedByUser = false;
     private Dimension preferredSize;
+
+    /**
+     * Counts the requests to recalculate preferred sizes across all components, forms
+     * compare it to tell whether a layout snapshot still matches the hierarchy
+     */
+    private static int preferredSizeChanges;
+    private static boolean preferredSizeChangesSuspended;
+
+    /**
+     * Counts changes to the bounds, focusability and hierarchy of components, forms
+     * compare it to tell whether their focus navigation graph is still valid
+     */
+    static int focusGraphChanges;
     private boolean scrollSizeRequestedByUser = false;
     Dimension scrollSize;
     private Style unSelectedStyle;
@@ -367,6 +380,9 @@ public class Component implements Animation, StyleListener {
      * @param visible true if component is visible; otherwise false 
      */
     public void setVisible(boolean visible) {
+        if(this.visible != visible) {
+            focusGraphChanges++;
+        }
         this.visible = visible;
     }
 
@@ -396,7 +412,10 @@ public class Component implements Animation, StyleListener {
      * @param x the current x coordinate of the components origin
      */
     public void setX(int x) {
-        bounds.setX(x);
+        if(bounds.getX() != x) {
+            bounds.setX(x);
+            boundsChanged();
+        }
     }
 
     /**
@@ -407,7 +426,10 @@ public class Component implements Animation, StyleListener {
      * @param y the current y coordinate of the components origin
      */
     public void setY(int y) {
-        bounds.setY(y);
+        if(bounds.getY() != y) {
+            bounds.setY(y);
+            boundsChanged();
+        }
     }
 
     /**
@@ -444,6 +466,7 @@ public class Component implements Animation, StyleListener {
      * @param d the component dimension
      */
     public void setPreferredSize(Dimension d) {
+        preferredSizeChanged();
         if(d == null) {
             sizeRequestedByUser = false;
             preferredSize = null;
@@ -560,7 +583,11 @@ public class Component implements Animation, StyleListener {
      * @see #setPreferredSize
      */
     public void setWidth(int width) {
-        bounds.getSize().setWidth(width);
+        Dimension d = bounds.getSize();
+        if(d.getWidth() != width) {
+            d.setWidth(width);
+            boundsChanged();
+        }
     }
 
     /**
@@ -573,7 +600,11 @@ public class Component implements Animation, StyleListener {
      * @see #setPreferredSize
      */
     public void setHeight(int height) {
-        bounds.getSize().setHeight(height);
+        Dimension d = bounds.getSize();
+        if(d.getHeight() != height) {
+            d.setHeight(height);
+            boundsChanged();
+        }
     }
 
     /**
@@ -587,8 +618,22 @@ public class Component implements Animation, StyleListener {
      */
     public void setSize(Dimension d) {
         Dimension d2 = bounds.getSize();
-        d2.setWidth(d.getWidth());
-        d2.setHeight(d.getHeight());
+        if(d2.getWidth() != d.getWidth() || d2.getHeight() != d.getHeight()) {
+            d2.setWidth(d.getWidth());
+            d2.setHeight(d.getHeight());
+            boundsChanged();
+        }
+    }
+
+    /**
+     * Invalidates the focus navigation graphs and the spatial index of the parent
+     * container if it has one
+     */
+    private void boundsChanged() {
+        focusGraphChanges++;
+        if(parent != null && parent.spatialIndex != null) {
+            parent.spatialIndex.valid = false;
+        }
     }
 
     /**
@@ -614,6 +659,7 @@ public class Component implements Animation, StyleListener {
         disabledStyle = null;
         pressedStyle = null;
         if(!sizeRequestedByUser) {
+            preferredSizeChanged();
             preferredSize = null;
         }
     }
@@ -1306,12 +1352,14 @@ public class Component implements Animation, StyleListener {
      * @param scrollX the X position of the scrolling
      */
     protected void setScrollX(int scrollX) {
+        int oldScrollX = this.scrollX;
         // the setter must always update the value regardless...
         this.scrollX = scrollX;
         if(!isSmoothScrolling() || !isTensileDragEnabled()) {
             this.scrollX = Math.min(this.scrollX, getScrollDimension().getWidth() - getWidth());
             this.scrollX = Math.max(this.scrollX, 0);
         }
+        scrollChanged(oldScrollX != this.scrollX);
         if (isScrollableX()) {
             repaint();
         }
@@ -1325,6 +1373,7 @@ public class Component implements Animation, StyleListener {
      * @param scrollY the Y position of the scrolling
      */
     protected void setScrollY(int scrollY) {
+        int oldScrollY = this.scrollY;
         // the setter must always update the value regardless... 
         this.scrollY = scrollY;
         if(!isSmoothScrolling() || !isTensileDragEnabled()) {
@@ -1334,12 +1383,24 @@ public class Component implements Animation, StyleListener {
         } else {
             updateTensileHighlightIntensity();
         }
+        scrollChanged(oldScrollY != this.scrollY);
         
         if (isScrollableY()) {
             repaint();
         }
     }
 
+    /**
+     * Scrolling moves the descendants of the component relative to the rest of the
+     * form which invalidates focus navigation graphs, scrolling the content pane
+     * moves all of its focusable components alike and is ignored
+     */
+    private void scrollChanged(boolean changed) {
+        if(changed && !(parent instanceof Form)) {
+            focusGraphChanges++;
+        }
+    }
+
     private void updateTensileHighlightIntensity() {
         if(tensileHighlightEnabled) {
             int h = getScrollDimension().getHeight() - getHeight();
@@ -1466,6 +1527,9 @@ public class Component implements Animation, StyleListener {
      * @param focusable indicate whether this component can get focused
      */
     public void setFocusable(boolean focusable) {
+        if(this.focusable != focusable) {
+            focusGraphChanges++;
+        }
         this.focusable = focusable;
     }
 
@@ -1477,6 +1541,9 @@ public class Component implements Animation, StyleListener {
      * recalculate his preferred size
      */
     public void setShouldCalcPreferredSize(boolean shouldCalcPreferredSize) {
+        if (shouldCalcPreferredSize) {
+            preferredSizeChanged();
+        }
         if (!shouldCalcScrollSize) {
             this.shouldCalcScrollSize = shouldCalcPreferredSize;
         }
@@ -1490,6 +1557,82 @@ public class Component implements Animation, StyleListener {
         }
     }
 
+    /**
+     * Records a request to recalculate a preferred size
+     */
+    static void preferredSizeChanged() {
+        if (!preferredSizeChangesSuspended) {
+            preferredSizeChanges++;
+        }
+    }
+
+    /**
+     * Returns the number of requests to recalculate preferred sizes so far
+     */
+    static int getPreferredSizeChanges() {
+        return preferredSizeChanges;
+    }
+
+    /**
+     * Stops counting requests to recalculate preferred sizes while a form lays itself
+     * out for a new display size
+     */
+    static void setPreferredSizeChangesSuspended(boolean suspended) {
+        preferredSizeChangesSuspended = suspended;
+    }
+
+    /**
+     * Copies the bounds and the calculated preferred size of this component into the
+     * given array for a layout snapshot
+     *
+     * @param state the array
+     * @param offset the offset of the LayoutSnapshot.STATE_SIZE entries of this component
+     * @return false if a layout is pending and the state can't be saved
+     */
+    boolean saveLayoutState(int[] state, int offset) {
+        state[offset] = getX();
+        state[offset + 1] = getY();
+        state[offset + 2] = getWidth();
+        state[offset + 3] = getHeight();
+        if (sizeRequestedByUser || shouldCalcPreferredSize || preferredSize == null) {
+            state[offset + 4] = -1;
+            state[offset + 5] = -1;
+        } else {
+            state[offset + 4] = preferredSize.getWidth();
+            state[offset + 5] = preferredSize.getHeight();
+        }
+        return true;
+    }
+
+    /**
+     * Restores the bounds saved by saveLayoutState
+     *
+     * @param state the array
+     * @param offset the offset of the LayoutSnapshot.STATE_SIZE entries of this component
+     */
+    void restoreBounds(int[] state, int offset) {
+        setX(state[offset]);
+        setY(state[offset + 1]);
+        setWidth(state[offset + 2]);
+        setHeight(state[offset + 3]);
+    }
+
+    /**
+     * Restores the preferred size saved by saveLayoutState, this is invoked once the
+     * bounds of all the components were restored since setting the bounds of some
+     * components requests to recalculate their preferred size
+     *
+     * @param state the array
+     * @param offset the offset of the LayoutSnapshot.STATE_SIZE entries of this component
+     */
+    void restoreLayoutState(int[] state, int offset) {
+        if (state[offset + 4] > -1) {
+            preferredSize = new Dimension(state[offset + 4], state[offset + 5]);
+            shouldCalcPreferredSize = false;
+        }
+        shouldCalcScrollSize = true;
+    }
+
 
     /**
      * Prevents key events from being grabbed for focus traversal. E.g. a list component
@@ -3132,6 +3275,7 @@ public class Component implements Animation, StyleListener {
             return;
         }
         this.enabled = enabled;
+        focusGraphChanges++;
         repaint();
     }
 
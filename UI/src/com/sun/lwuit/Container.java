@@ -24,7 +24,6 @@
 package com.sun.lwuit;
 
 import com.sun.lwuit.animations.Animation;
-import com.sun.lwuit.animations.Motion;
 import com.sun.lwuit.animations.Transition;
 import com.sun.lwuit.layouts.FlowLayout;
 import com.sun.lwuit.layouts.Layout;
@@ -47,13 +46,39 @@ import java.util.Vector;
  */
 public class Container extends Component {
     private static boolean enableLayoutOnPaint = true;
+
+    /**
+     * Counters of the containers laid out, a pass starts with an outermost call
+     * to layoutContainer and includes all the nested layouts
+     */
+    private static int layoutCount;
+    private static int layoutPassDepth;
+    private static int layoutPassStart;
+    private static int lastPassLayoutCount;
     private Component leadComponent;
     private Layout layout;
     private java.util.Vector components = new java.util.Vector();
     private boolean shouldLayout = true;
+
+    /**
+     * The size of the container when it was last laid out, a container whose
+     * size changed is laid out again even if nothing within it was invalidated
+     */
+    private int layoutWidth = -1;
+    private int layoutHeight = -1;
     boolean scrollableX;
     boolean scrollableY;
     private java.util.Vector cmpTransitions;
+
+    /**
+     * The layout animation currently running for this container if any
+     */
+    private LayoutAnimation layoutAnimation;
+
+    /**
+     * Index of the children bounds used by getComponentAt, null when disabled
+     */
+    SpatialIndex spatialIndex;
     private int scrollIncrement = 20;
     private boolean blockFocus = false;
 
@@ -222,6 +247,9 @@ public class Container extends Component {
      * @inheritDoc
      */
     public void setShouldCalcPreferredSize(boolean shouldCalcPreferredSize) {
+        if(shouldCalcPreferredSize) {
+            preferredSizeChanged();
+        }
         // minor optimization preventing repeated invokations to setShouldCalcPreferredSize
         if(shouldCalcPreferredSize && this.shouldLayout && this.shouldCalcPreferredSize && !isInitialized()) {
             Container p = getParent();
@@ -366,6 +394,14 @@ public class Container extends Component {
     }
 
     void insertComponentAt(int index, Component cmp) {
+        insertComponentAt(index, cmp, true);
+    }
+
+    /**
+     * Adds the component to the container, containers that position their children
+     * on their own (e.g. LazyContainer) can avoid invalidating the layout
+     */
+    void insertComponentAt(int index, Component cmp, boolean invalidate) {
         if (cmp.getParent() != null) {
             throw new IllegalArgumentException("Component is already contained in Container: " + cmp.getParent());
         }
@@ -375,7 +411,13 @@ public class Container extends Component {
         }
         cmp.setParent(this);
         components.insertElementAt(cmp, index);
-        setShouldCalcPreferredSize(true);
+        focusGraphChanges++;
+        if(spatialIndex != null) {
+            spatialIndex.valid = false;
+        }
+        if(invalidate) {
+            invalidateLayout();
+        }
         if (isInitialized()) {
             cmp.initComponentImpl();
         }
@@ -634,10 +676,22 @@ public class Container extends Component {
      * @param cmp the removed component
      */
     void removeComponentImpl(Component cmp) {
+        removeComponentImpl(cmp, true);
+    }
+
+    /**
+     * Removes the component from the container optionally without invalidating
+     * the layout
+     */
+    void removeComponentImpl(Component cmp, boolean invalidate) {
         Form parentForm = cmp.getComponentForm();
         layout.removeLayoutComponent(cmp);
         cmp.deinitializeImpl();
         components.removeElement(cmp);
+        focusGraphChanges++;
+        if(spatialIndex != null) {
+            spatialIndex.valid = false;
+        }
         cmp.setParent(null);
         if (parentForm != null) {
             if (parentForm.getFocused() == cmp || cmp instanceof Container && ((Container) cmp).contains(parentForm.getFocused())) {
@@ -651,7 +705,9 @@ public class Container extends Component {
         if(cmp instanceof Form) {
             cmp.setVisible(false);
         }
-        setShouldCalcPreferredSize(true);
+        if(invalidate) {
+            invalidateLayout();
+        }
     }
 
     /**
@@ -702,21 +758,82 @@ public class Container extends Component {
         }
     }
 
+    /**
+     * @inheritDoc
+     */
+    boolean saveLayoutState(int[] state, int offset) {
+        if(shouldLayout) {
+            return false;
+        }
+        state[offset + 6] = layoutWidth;
+        state[offset + 7] = layoutHeight;
+        return super.saveLayoutState(state, offset);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    void restoreLayoutState(int[] state, int offset) {
+        super.restoreLayoutState(state, offset);
+        layoutWidth = state[offset + 6];
+        layoutHeight = state[offset + 7];
+        shouldLayout = false;
+    }
+
+    /**
+     * Marks this container for layout without invalidating the containers nested
+     * within it, children whose size changes are laid out again by the layout
+     */
+    void invalidateLayout() {
+        super.setShouldCalcPreferredSize(true);
+        shouldLayout = true;
+    }
+
     /**
      * Re-layout the container, this is useful when we modify the container hierarchy and
-     * need to redo the layout
+     * need to redo the layout. When invoked on a form the entire form is laid out again,
+     * otherwise only this container and its ancestors are invalidated and the layout of
+     * the form descends only into them and into the containers whose size changed.
      */
     public void revalidate() {
-        setShouldCalcPreferredSize(true);
         Form root = getComponentForm();
-        
-        if (root != null) {
-            root.layoutContainer();
-            root.repaint();
-        } else {
+        if (root == null || root == this) {
+            setShouldCalcPreferredSize(true);
             layoutContainer();
             repaint();
+            return;
         }
+        invalidateLayout();
+        root.layoutContainer();
+        root.repaint();
+    }
+
+    /**
+     * Returns the number of containers laid out since the counter was reset, this
+     * is useful for tracking the cost of layout operations
+     *
+     * @return the number of containers laid out
+     */
+    public static int getLayoutCount() {
+        return layoutCount;
+    }
+
+    /**
+     * Returns the number of containers laid out by the last layout pass, e.g. by the
+     * last revalidate() call
+     *
+     * @return the number of containers laid out in the last pass
+     */
+    public static int getLastPassLayoutCount() {
+        return lastPassLayoutCount;
+    }
+
+    /**
+     * Resets the layout counters
+     */
+    public static void resetLayoutCount() {
+        layoutCount = 0;
+        lastPassLayoutCount = 0;
     }
 
     /**
@@ -802,7 +919,24 @@ public class Container extends Component {
         //will compute the container + components and will layout the components.
         if (shouldLayout) {
             shouldLayout = false;
-            doLayout();            
+
+            // passes are only tracked on the EDT, forms might be prepared on other threads
+            if(!Display.getInstance().isEdt()) {
+                doLayout();
+                return;
+            }
+            if(layoutPassDepth == 0) {
+                layoutPassStart = layoutCount;
+            }
+            layoutPassDepth++;
+            try {
+                doLayout();
+            } finally {
+                layoutPassDepth--;
+                if(layoutPassDepth == 0) {
+                    lastPassLayoutCount = layoutCount - layoutPassStart;
+                }
+            }
         }
     }
 
@@ -810,19 +944,44 @@ public class Container extends Component {
      * Lays out the container
      */
     void doLayout() {
+        // passes are only tracked on the EDT, forms might be prepared on other threads
+        if(Display.getInstance().isEdt()) {
+            layoutCount++;
+        }
         layout.layoutContainer(this);
         int count = getComponentCount();
         for (int i = 0; i < count; i++) {
             Component c = getComponentAt(i);
             if (c instanceof Container) {
-                ((Container) c).layoutContainer();
+                layoutChildContainer((Container) c);
             }else{
                 c.laidOut();
             }
         }
+        updateLayoutSize();
         laidOut();
     }
 
+    /**
+     * Records the size the container was laid out in, containers that position
+     * their children without doLayout should invoke this once they are done
+     */
+    void updateLayoutSize() {
+        layoutWidth = getWidth();
+        layoutHeight = getHeight();
+    }
+
+    /**
+     * Lays out a child container if it was invalidated or its size changed since
+     * its last layout
+     */
+    static void layoutChildContainer(Container cnt) {
+        if(cnt.getWidth() != cnt.layoutWidth || cnt.getHeight() != cnt.layoutHeight) {
+            cnt.shouldLayout = true;
+        }
+        cnt.layoutContainer();
+    }
+
     /**
      * Returns the number of components
      * 
@@ -1050,21 +1209,47 @@ public class Container extends Component {
      * @see Component#contains
      */
     public Component getComponentAt(int x, int y) {
-        int count = getComponentCount();
         boolean overlaps = getLayout().isOverlapSupported();
         Component component = null;
-        for (int i = count - 1; i >= 0; i--) {
-            Component cmp = getComponentAt(i);
-            if (cmp.contains(x, y)) {
-                component = cmp;
-                if (!overlaps && component.isFocusable()) {
-                    return component;
-                }
-                if (cmp instanceof Container) {
-                    component = ((Container) cmp).getComponentAt(x, y);
+        if (spatialIndex != null) {
+            if (!spatialIndex.valid) {
+                spatialIndex.build(this);
+            }
+            int cell = spatialIndex.getCell(x - getAbsoluteX(), y - getAbsoluteY());
+            if (cell > -1) {
+                int[] items = spatialIndex.items;
+                int end = spatialIndex.cellStart[cell + 1];
+                for (int i = spatialIndex.cellStart[cell]; i < end; i++) {
+                    Component cmp = getComponentAt(items[i]);
+                    if (cmp.contains(x, y)) {
+                        component = cmp;
+                        if (!overlaps && component.isFocusable()) {
+                            return component;
+                        }
+                        if (cmp instanceof Container) {
+                            component = ((Container) cmp).getComponentAt(x, y);
+                        }
+                        if (!overlaps || component.isFocusable() || component.isGrabsPointerEvents()) {
+                            return component;
+                        }
+                    }
                 }
-                if (!overlaps || component.isFocusable() || component.isGrabsPointerEvents()) {
-                    return component;
+            }
+        } else {
+            int count = getComponentCount();
+            for (int i = count - 1; i >= 0; i--) {
+                Component cmp = getComponentAt(i);
+                if (cmp.contains(x, y)) {
+                    component = cmp;
+                    if (!overlaps && component.isFocusable()) {
+                        return component;
+                    }
+                    if (cmp instanceof Container) {
+                        component = ((Container) cmp).getComponentAt(x, y);
+                    }
+                    if (!overlaps || component.isFocusable() || component.isGrabsPointerEvents()) {
+                        return component;
+                    }
                 }
             }
         }
@@ -1077,6 +1262,35 @@ public class Container extends Component {
         return null;
     }
 
+    /**
+     * Indicates whether getComponentAt(int, int) and pointer event dispatch should
+     * locate children through a grid of buckets over their bounds rather than by
+     * testing every child. This pays off for containers with many positioned
+     * children such as those using a CoordinateLayout or LayeredLayout, it assumes
+     * the children don't override contains(int, int) to exceed their bounds.
+     *
+     * @param enabled true to maintain the index
+     */
+    public void setSpatialIndexEnabled(boolean enabled) {
+        if(enabled) {
+            if(spatialIndex == null) {
+                spatialIndex = new SpatialIndex();
+            }
+        } else {
+            spatialIndex = null;
+        }
+    }
+
+    /**
+     * Indicates whether children are located through a spatial index
+     *
+     * @return true if the index is maintained
+     * @see #setSpatialIndexEnabled
+     */
+    public boolean isSpatialIndexEnabled() {
+        return spatialIndex != null;
+    }
+
     /**
      * @inheritDoc
      */
@@ -1416,6 +1630,9 @@ public class Container extends Component {
      * @param blockFocus
      */
     void setBlockFocus(boolean blockFocus) {
+        if(this.blockFocus != blockFocus) {
+            focusGraphChanges++;
+        }
         this.blockFocus = blockFocus;
     }
 
@@ -1471,57 +1688,204 @@ public class Container extends Component {
     }
 
     /**
-     * Animates a pending layout into place, this effectively replaces revalidate with a more visual form of animation
+     * Animates a pending layout into place, this effectively replaces revalidate with a more visual form of animation.
+     * If a layout animation is already running the components continue from their current positions
+     * towards the new layout
      *
      * @param duration the duration in milliseconds for the animation
      */
     private void animateLayout(final int duration, boolean wait) {
         enableLayoutOnPaint = false;
-        final int componentCount = getComponentCount();
-        int[] beforeX = new int[componentCount];
-        int[] beforeY = new int[componentCount];
-        int[] beforeW = new int[componentCount];
-        int[] beforeH = new int[componentCount];
-        final Motion[] xMotions = new Motion[componentCount];
-        final Motion[] yMotions = new Motion[componentCount];
-        final Motion[] wMotions = new Motion[componentCount];
-        final Motion[] hMotions = new Motion[componentCount];
-        for(int iter = 0 ; iter < componentCount ; iter++) {
-            Component current = getComponentAt(iter);
-            beforeX[iter] = current.getX();
-            beforeY[iter] = current.getY();
-            beforeW[iter] = current.getWidth();
-            beforeH[iter] = current.getHeight();
+        LayoutAnimation a = layoutAnimation;
+        boolean running = a != null && !a.isFinished();
+        if(!running) {
+            a = new LayoutAnimation(this);
+            layoutAnimation = a;
         }
+        a.captureStart();
         layoutContainer();
-        for(int iter = 0 ; iter < componentCount ; iter++) {
-            Component current = getComponentAt(iter);
-            xMotions[iter] = Motion.createSplineMotion(beforeX[iter], current.getX(), duration);
-            yMotions[iter] = Motion.createSplineMotion(beforeY[iter], current.getY(), duration);
-            wMotions[iter] = Motion.createSplineMotion(beforeW[iter], current.getWidth(), duration);
-            hMotions[iter] = Motion.createSplineMotion(beforeH[iter], current.getHeight(), duration);
-            xMotions[iter].start();
-            yMotions[iter].start();
-            wMotions[iter].start();
-            hMotions[iter].start();
-            current.setX(beforeX[iter]);
-            current.setY(beforeY[iter]);
-            current.setWidth(beforeW[iter]);
-            current.setHeight(beforeH[iter]);
-        }
-        Anim a = new Anim(this, duration, new Motion[][] {
-            xMotions, yMotions, wMotions, hMotions
-        });
-        getComponentForm().registerAnimated(a);
+        a.captureEnd(duration);
+        if(!running) {
+            getComponentForm().registerAnimated(a);
+        }
         if(wait) {
             Display.getInstance().invokeAndBlock(a);
         }
     }
 
-    static class Anim implements Animation, Runnable {
-        private int animationType;
+    /**
+     * Moves the components of a container from their bounds before a layout to their bounds
+     * after the layout. The bounds are kept in arrays and every frame evaluates the easing
+     * curve once for all the components.
+     */
+    static class LayoutAnimation implements Animation, Runnable {
+        /**
+         * The progress of the animation is a fixed point value between 0 and PROGRESS_SCALE
+         */
+        private static final int PROGRESS_SHIFT = 12;
+        private static final int PROGRESS_SCALE = 1 << PROGRESS_SHIFT;
+
+        private Container thisContainer;
+        private Component[] components;
+        private int count;
+        private int[] startX;
+        private int[] startY;
+        private int[] startW;
+        private int[] startH;
+        private int[] deltaX;
+        private int[] deltaY;
+        private int[] deltaW;
+        private int[] deltaH;
         private long startTime;
         private int duration;
+        private boolean finished;
+
+        LayoutAnimation(Container thisContainer) {
+            this.thisContainer = thisContainer;
+        }
+
+        /**
+         * Records the bounds of the components before the layout, these are the positions
+         * the components are currently painted at when an animation is retargeted
+         */
+        void captureStart() {
+            count = thisContainer.getComponentCount();
+            if(components == null || components.length < count) {
+                components = new Component[count];
+                startX = new int[count];
+                startY = new int[count];
+                startW = new int[count];
+                startH = new int[count];
+                deltaX = new int[count];
+                deltaY = new int[count];
+                deltaW = new int[count];
+                deltaH = new int[count];
+            }
+            for(int iter = 0 ; iter < count ; iter++) {
+                Component current = thisContainer.getComponentAt(iter);
+                components[iter] = current;
+                startX[iter] = current.getX();
+                startY[iter] = current.getY();
+                startW[iter] = current.getWidth();
+                startH[iter] = current.getHeight();
+            }
+            for(int iter = count ; iter < components.length ; iter++) {
+                components[iter] = null;
+            }
+        }
+
+        /**
+         * Records the bounds of the components after the layout, moves the components back
+         * to their start bounds and restarts the clock
+         */
+        void captureEnd(int duration) {
+            for(int iter = 0 ; iter < count ; iter++) {
+                Component current = components[iter];
+                deltaX[iter] = current.getX() - startX[iter];
+                deltaY[iter] = current.getY() - startY[iter];
+                deltaW[iter] = current.getWidth() - startW[iter];
+                deltaH[iter] = current.getHeight() - startH[iter];
+                current.setX(startX[iter]);
+                current.setY(startY[iter]);
+                current.setWidth(startW[iter]);
+                current.setHeight(startH[iter]);
+            }
+            this.duration = duration;
+            startTime = System.currentTimeMillis();
+        }
+
+        /**
+         * Returns the progress of the spline motion at the given time, the same curve
+         * as Motion.createSplineMotion accelerating for the first half of the duration
+         * and slowing down for the second
+         */
+        private static int getProgress(long elapsed, int duration) {
+            if(elapsed >= duration) {
+                return PROGRESS_SCALE;
+            }
+            if(elapsed <= 0) {
+                return 0;
+            }
+            float centerTime = ((float)duration) / 2;
+            float currentTime = elapsed;
+            float value;
+            if(currentTime > centerTime) {
+                value = -centerTime * centerTime + 2 * centerTime * currentTime - currentTime * currentTime / 2;
+            } else {
+                value = currentTime * currentTime / 2;
+            }
+            return (int)(value / (centerTime * centerTime) * PROGRESS_SCALE);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public boolean animate() {
+            long elapsed = System.currentTimeMillis() - startTime;
+            int progress = getProgress(elapsed, duration);
+            for(int iter = 0 ; iter < count ; iter++) {
+                Component current = components[iter];
+
+                // this might happen if a component was replaced during animation
+                if(current.getParent() != thisContainer) {
+                    continue;
+                }
+                current.setX(startX[iter] + (deltaX[iter] * progress >> PROGRESS_SHIFT));
+                current.setY(startY[iter] + (deltaY[iter] * progress >> PROGRESS_SHIFT));
+                current.setWidth(startW[iter] + (deltaW[iter] * progress >> PROGRESS_SHIFT));
+                current.setHeight(startH[iter] + (deltaH[iter] * progress >> PROGRESS_SHIFT));
+            }
+            thisContainer.repaint();
+            if(progress == PROGRESS_SCALE) {
+                enableLayoutOnPaint = true;
+                if(thisContainer.layoutAnimation == this) {
+                    thisContainer.layoutAnimation = null;
+                }
+                Form f = thisContainer.getComponentForm();
+                if(f != null) {
+                    f.deregisterAnimated(this);
+                    f.revalidate();
+                }
+                synchronized(this) {
+                    finished = true;
+                    notifyAll();
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public void paint(Graphics g) {
+        }
+
+        /**
+         * Returns true once the components reached their final bounds
+         *
+         * @return true if the animation completed
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        public void run() {
+            while (!isFinished()) {
+                try {
+                    synchronized(this) {
+                        wait(50);
+                    }
+                } catch (InterruptedException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    static class Anim implements Animation, Runnable {
         private Transition t;
         private Component current;
         private Component next;
@@ -1529,21 +1893,11 @@ public class Container extends Component {
         private Container thisContainer;
         private boolean finished = false;
         private Form parent;
-        private Motion[][] motions;
         Runnable onFinish;
         int growSpeed;
         int layoutAnimationSpeed;
 
-        public Anim(Container thisContainer, int duration, Motion[][] motions) {
-            startTime = System.currentTimeMillis();
-            animationType = 2;
-            this.duration = duration;
-            this.thisContainer = thisContainer;
-            this.motions = motions;
-        }
-
         public Anim(Container thisContainer, Component current, Component next, Transition t) {
-            animationType = 1;
             this.t = t;
             this.next = next;
             this.current = current;
@@ -1552,51 +1906,21 @@ public class Container extends Component {
         }
 
         public boolean animate() {
-            switch(animationType) {
-                case 2:
-                    int componentCount = thisContainer.getComponentCount();
-                    for(int iter = 0 ; iter < componentCount ; iter++) {
-                        Component currentCmp = thisContainer.getComponentAt(iter);
-
-                        // this might happen if a container was replaced during animation
-                        if(currentCmp == null) {
-                            continue;
-                        }
-                        currentCmp.setX(motions[0][iter].getValue());
-                        currentCmp.setY(motions[1][iter].getValue());
-                        currentCmp.setWidth(motions[2][iter].getValue());
-                        currentCmp.setHeight(motions[3][iter].getValue());
-                    }
-                    thisContainer.repaint();
-                    if(System.currentTimeMillis() - startTime >= duration) {
-                        enableLayoutOnPaint = true;
-                        Form f = thisContainer.getComponentForm();
-                        f.deregisterAnimated(this);
-                        f.revalidate();
-                        synchronized(this) {
-                            finished = true;
-                            notify();
-                        }
-                    }
-                    return false;
-
-                default:
-                    if (!started) {
-                        t.init(current, next);
-                        t.initTransition();
-                        started = true;
-                        if (thisContainer.cmpTransitions == null) {
-                            thisContainer.cmpTransitions = new Vector();
-                        }
-                        thisContainer.cmpTransitions.addElement(this);
-                    }
-                    boolean notFinished = t.animate();
-                    if (!notFinished) {
-                        thisContainer.cmpTransitions.removeElement(this);
-                        destroy();
-                    }
-                    return notFinished;
+            if (!started) {
+                t.init(current, next);
+                t.initTransition();
+                started = true;
+                if (thisContainer.cmpTransitions == null) {
+                    thisContainer.cmpTransitions = new Vector();
+                }
+                thisContainer.cmpTransitions.addElement(this);
+            }
+            boolean notFinished = t.animate();
+            if (!notFinished) {
+                thisContainer.cmpTransitions.removeElement(this);
+                destroy();
             }
+            return notFinished;
         }
 
         public void destroy() {
@@ -23,7 +23,6 @@
  */
 package com.sun.lwuit;
 
-import java.util.Hashtable;
 
 
 
@@ -35,17 +34,26 @@ import java.util.Hashtable;
  */
 class CustomFont extends Font {
     /**
-     * Keep two colors in cache by default to allow faster selection colors
+     * Number of tinted font bitmaps kept for recently used colors, this allows
+     * alternating between selected and unselected colors without recoloring
      */
-    private static final int COLOR_CACHE_SIZE = 20;
-    
-    private Hashtable colorCache = new Hashtable();
+    private static final int COLOR_CACHE_SIZE = 8;
+
+    /**
+     * Fonts with more glyphs than this (e.g. CJK fonts) are split into blocks of
+     * consecutive glyphs, a block is only converted and tinted once one of its
+     * glyphs is drawn so a screen showing a few dozen characters doesn't hold
+     * the whole bitmap in memory for every color
+     */
+    private static final int BLOCK_GLYPHS = 64;
 
     private String charsets;
-    private int color;
-    
-    // package protected for the resource editor
-    Image cache;
+
+    /**
+     * The source red and black bitmap, the font is converted into alpha blocks
+     * from this image when the glyphs are first drawn
+     */
+    private Image bitmap;
     
     /**
      * The offset in which to cut the character from the bitmap
@@ -63,21 +71,27 @@ class CustomFont extends Font {
 
     private int imageWidth;
     private int imageHeight;
-    private Object imageArrayRef;
-    
-    
-    private int[] getImageArray() {
-        if(imageArrayRef != null) {
-            int[] a = (int[])Display.getInstance().extractHardRef(imageArrayRef);
-            if(a != null) {
-                return a;
-            }
-        }
-        int[] a = cache.getRGBCached();
-        
-        imageArrayRef = Display.getInstance().createSoftWeakRef(a);
-        return a;
-    }
+
+    /**
+     * Two level char to glyph index table, the high byte of the character selects
+     * a page of 256 entries which is only allocated when the charset contains a
+     * character within that page. Entries hold the glyph offset plus one so zero
+     * indicates a character that isn't available in the font.
+     */
+    private short[][] glyphPages;
+
+    /**
+     * Blocks of glyphs created on first use, a font with up to BLOCK_GLYPHS glyphs
+     * has a single block covering the whole bitmap
+     */
+    private GlyphBlock[] blocks;
+    private int blockGlyphs;
+
+    /**
+     * The sum of the contrast values added to the font, applied whenever a block
+     * is converted from the source bitmap
+     */
+    private int contrast;
     
     /**
      * Creates a bitmap font with the given arguments
@@ -93,30 +107,259 @@ class CustomFont extends Font {
      * @return a font object to draw bitmap fonts
      */
     public CustomFont(Image bitmap, int[] cutOffsets, int[] charWidth, String charsets) {
+        this.bitmap = bitmap;
         this.cutOffsets = cutOffsets;
         this.charWidth = charWidth;
         this.charsets = charsets;
+        glyphPages = createGlyphPages(charsets);
         imageWidth = bitmap.getWidth();
         imageHeight = bitmap.getHeight();
-        int[] imageArray = new int[imageWidth * imageHeight];
-        
-        // default to black colored font
-        bitmap.getRGB(imageArray, 0, 0, 0, imageWidth, imageHeight);
+        int count = Math.max(1, cutOffsets.length);
+        if(count > BLOCK_GLYPHS) {
+            blockGlyphs = BLOCK_GLYPHS;
+        } else {
+            blockGlyphs = count;
+        }
+        blocks = new GlyphBlock[(count + blockGlyphs - 1) / blockGlyphs];
+    }
+
+    /**
+     * Returns the block containing the glyph at the given offset creating it if
+     * necessary
+     */
+    private GlyphBlock getBlock(int glyph) {
+        int b = glyph / blockGlyphs;
+        GlyphBlock block = blocks[b];
+        if(block == null) {
+            block = new GlyphBlock(b * blockGlyphs, Math.min(cutOffsets.length, (b + 1) * blockGlyphs));
+            blocks[b] = block;
+        }
+        return block;
+    }
+
+    /**
+     * Reads the given columns of the source bitmap and converts the red channel
+     * to the alpha of a black image applying the contrast of the font
+     */
+    private int[] createAlphaArray(int x, int width) {
+        int[] imageArray = new int[width * imageHeight];
+        bitmap.getRGB(imageArray, 0, x, 0, width, imageHeight);
         for(int iter = 0 ; iter < imageArray.length ; iter++) {
             // extract the red component from the font image
-            // shift the alpha 8 bits to the left
-            // apply the alpha to the image
-            imageArray[iter] = ((imageArray[iter] & 0xff0000) << 8);
+            int alpha = (imageArray[iter] >> 16) & 0xff;
+            if(alpha != 0 && contrast != 0) {
+                alpha = Math.max(0, Math.min(alpha + contrast, 255));
+            }
+            imageArray[iter] = alpha << 24;
+        }
+        return imageArray;
+    }
+
+    // package protected for the resource editor
+    Image getAlphaImage() {
+        return Image.createImage(createAlphaArray(0, imageWidth), imageWidth, imageHeight);
+    }
+
+    /**
+     * A run of consecutive glyphs along with the converted bitmap covering them,
+     * the tinted bitmaps of the block and the native alpha mask
+     */
+    private class GlyphBlock {
+        /**
+         * The column of the source bitmap where this block starts
+         */
+        int x;
+        int width;
+        int color;
+        Image cache;
+        Object imageArrayRef;
+        Object alphaMask;
+        boolean alphaMaskChecked;
+
+        /**
+         * Colors of the tinted bitmaps ordered from the most recently used, the matching
+         * entries in tintRefs are soft references to the bitmaps
+         */
+        int[] tintColors;
+        Object[] tintRefs;
+        int tintCount;
+
+        GlyphBlock(int first, int last) {
+            int left = imageWidth;
+            int right = 0;
+            for(int iter = first ; iter < last ; iter++) {
+                left = Math.min(left, cutOffsets[iter]);
+                right = Math.max(right, cutOffsets[iter] + charWidth[iter]);
+            }
+            x = Math.max(0, Math.min(left, imageWidth - 1));
+            width = Math.max(1, Math.min(right, imageWidth) - x);
+        }
+
+        int[] getImageArray() {
+            if(imageArrayRef != null) {
+                int[] a = (int[])Display.getInstance().extractHardRef(imageArrayRef);
+                if(a != null) {
+                    return a;
+                }
+            }
+            int[] a;
+            if(cache != null) {
+                a = cache.getRGBCached();
+            } else {
+                a = createAlphaArray(x, width);
+                if(color != 0) {
+                    for(int iter = 0 ; iter < a.length ; iter++) {
+                        a[iter] |= color;
+                    }
+                }
+            }
+            imageArrayRef = Display.getInstance().createSoftWeakRef(a);
+            return a;
+        }
+
+        Image getCache() {
+            if(cache == null) {
+                cache = Image.createImage(getImageArray(), width, imageHeight);
+            }
+            return cache;
+        }
+
+        /**
+         * Returns the native alpha mask for this block creating it on first use
+         */
+        Object getAlphaMask() {
+            if(!alphaMaskChecked) {
+                alphaMaskChecked = true;
+                alphaMask = Display.getInstance().getImplementation().createAlphaMask(getImageArray(), width, imageHeight);
+            }
+            return alphaMask;
+        }
+
+        /**
+         * Moves the tinted bitmap at the given offset to the front of the cache
+         */
+        void touchTint(int offset, int tintColor, Object ref) {
+            System.arraycopy(tintColors, 0, tintColors, 1, offset);
+            System.arraycopy(tintRefs, 0, tintRefs, 1, offset);
+            tintColors[0] = tintColor;
+            tintRefs[0] = ref;
+        }
+
+        /**
+         * Adds the current bitmap to the tint cache under the current color
+         */
+        void cacheCurrentTint() {
+            if(tintColors == null) {
+                tintColors = new int[COLOR_CACHE_SIZE];
+                tintRefs = new Object[COLOR_CACHE_SIZE];
+            }
+            for(int iter = 0 ; iter < tintCount ; iter++) {
+                if(tintColors[iter] == color) {
+                    touchTint(iter, color, Display.getInstance().createSoftWeakRef(cache));
+                    return;
+                }
+            }
+            if(tintCount < COLOR_CACHE_SIZE) {
+                tintCount++;
+            }
+            touchTint(tintCount - 1, color, Display.getInstance().createSoftWeakRef(cache));
+        }
+
+        void initColor(int newColor) {
+            if(newColor == color || getAlphaMask() != null) {
+                return;
+            }
+            if(cache == null) {
+                // nothing was drawn in the previous color, the bitmap is created
+                // in the new color when the block is drawn
+                color = newColor;
+                if(imageArrayRef != null) {
+                    int[] imageArray = (int[])Display.getInstance().extractHardRef(imageArrayRef);
+                    if(imageArray != null) {
+                        for(int iter = 0 ; iter < imageArray.length ; iter++) {
+                            imageArray[iter] = newColor | (imageArray[iter] & 0xff000000);
+                        }
+                    }
+                }
+                return;
+            }
+            if(tintCount == 0) {
+                cacheCurrentTint();
+            }
+            color = newColor;
+            for(int iter = 0 ; iter < tintCount ; iter++) {
+                if(tintColors[iter] == newColor) {
+                    Object ref = tintRefs[iter];
+                    Image i = (Image)Display.getInstance().extractHardRef(ref);
+                    if(i != null) {
+                        cache = i;
+                        touchTint(iter, newColor, ref);
+                        return;
+                    }
+                    break;
+                }
+            }
+            int[] imageArray = getImageArray();
+            for(int iter = 0 ; iter < imageArray.length ; iter++) {
+                // keep the alpha of the font image and apply the new color
+                imageArray[iter] = newColor | (imageArray[iter] & 0xff000000);
+            }
+            cache = Image.createImage(imageArray, width, imageHeight);
+            cacheCurrentTint();
+        }
+
+        /**
+         * Draws the glyph at the given offset, the clip must already be set to the
+         * bounds of the glyph
+         */
+        void drawGlyph(Graphics g, int glyph, int drawX, int drawY) {
+            Object mask = getAlphaMask();
+            if(mask != null) {
+                g.drawAlphaMask(mask, drawX - cutOffsets[glyph] + x, drawY);
+            } else {
+                g.drawImage(getCache(), drawX - cutOffsets[glyph] + x, drawY);
+            }
         }
-        cache = Image.createImage(imageArray, imageWidth, imageHeight);
-        imageArrayRef = Display.getInstance().createSoftWeakRef(imageArray);
     }
     
+    /**
+     * Builds the char to glyph lookup table for the given charset, when a character
+     * repeats in the charset the first occurrence wins to match the indexOf semantics
+     */
+    private static short[][] createGlyphPages(String charsets) {
+        short[][] pages = new short[256][];
+        int len = charsets.length();
+        for(int iter = 0 ; iter < len ; iter++) {
+            char c = charsets.charAt(iter);
+            short[] page = pages[c >> 8];
+            if(page == null) {
+                page = new short[256];
+                pages[c >> 8] = page;
+            }
+            if(page[c & 0xff] == 0) {
+                page[c & 0xff] = (short)(iter + 1);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Returns the offset of the glyph for the given character within the cut offsets
+     * and char width arrays or -1 if the character isn't a part of this font
+     */
+    private int glyphIndex(char ch) {
+        short[] page = glyphPages[ch >> 8];
+        if(page == null) {
+            return -1;
+        }
+        return (page[ch & 0xff] & 0xffff) - 1;
+    }
+
     /**
      * @inheritDoc
      */
     public int charWidth(char ch) {
-        int i = charsets.indexOf(ch);
+        int i = glyphIndex(ch);
         if(i < 0) {
             return 0;
         }
@@ -129,50 +372,6 @@ class CustomFont extends Font {
     public int getHeight() {
         return imageHeight;
     }
-
-    private boolean checkCacheCurrentColor(int newColor) {
-        Integer currentColor = new Integer(color);
-        Integer newColorKey = new Integer(newColor);
-        if(colorCache.get(currentColor) == null){
-            colorCache.put(currentColor, Display.getInstance().createSoftWeakRef(cache));
-        }
-        color = newColor;
-        Object newCache = Display.getInstance().extractHardRef(colorCache.get(newColorKey));
-        if(newCache != null) {
-            Image i = (Image)newCache;
-            if(i != null) {
-                cache = i;
-                if(colorCache.size() > COLOR_CACHE_SIZE) {
-                    // remove a random cache element
-                    colorCache.remove(colorCache.keys().nextElement());
-                }
-                return true;
-            }else{
-                colorCache.remove(newColorKey);
-            }
-        }
-        if(colorCache.size() > COLOR_CACHE_SIZE) {
-            // remove a random cache element
-            colorCache.remove(colorCache.keys().nextElement());
-        }        
-        return false;
-    }
-    
-    private void initColor(Graphics g) {
-        int newColor = g.getColor();
-        
-        if(newColor != color && !checkCacheCurrentColor(newColor)) {
-            color = newColor & 0xffffff;
-            int[] imageArray = getImageArray();
-            for(int iter = 0 ; iter < imageArray.length ; iter++) {
-                // extract the red component from the font image
-                // shift the alpha 8 bits to the left
-                // apply the alpha to the image
-                imageArray[iter] = color | (imageArray[iter] & 0xff000000);
-            }
-            cache = Image.createImage(imageArray, imageWidth, imageHeight);
-        }
-    }
     
     /**
      * @inheritDoc
@@ -183,13 +382,14 @@ class CustomFont extends Font {
         int clipWidth = g.getClipWidth();
         int clipHeight = g.getClipHeight();
 
-        int i = charsets.indexOf(character);
+        int i = glyphIndex(character);
         if(i > -1) {
-            initColor(g);
+            GlyphBlock block = getBlock(i);
+            block.initColor(g.getColor() & 0xffffff);
             
             // draw region is flaky on some devices, use setClip instead
             g.clipRect(x, y, charWidth[i], imageHeight);
-            g.drawImage(cache, x - cutOffsets[i], y);
+            block.drawGlyph(g, i, x, y);
             //g.drawRegion(cache, cutOffsets[i], 0, charWidth[i], imageHeight, x, y);
         }
 
@@ -201,13 +401,11 @@ class CustomFont extends Font {
      * @inheritDoc
      */
     public void addContrast(byte value) {
-        int[] imageArray = getImageArray();
-        for(int iter = 0 ; iter < imageArray.length ; iter++) {
-            int alpha = (imageArray[iter] >> 24) & 0xff;
-            if(alpha != 0) {
-                alpha = Math.min(alpha + value, 255);
-                imageArray[iter] = ((alpha << 24) & 0xff000000) | color;
-            }
+        contrast = Math.min(contrast + value, 255);
+
+        // blocks are converted again from the source bitmap with the new contrast
+        for(int iter = 0 ; iter < blocks.length ; iter++) {
+            blocks[iter] = null;
         }
     }
 
@@ -233,24 +431,35 @@ class CustomFont extends Font {
                 }
             }
         }
-        initColor(g);
+        int color = g.getColor() & 0xffffff;
         int clipX = g.getClipX();
         int clipY = g.getClipY();
         int clipWidth = g.getClipWidth();
         int clipHeight = g.getClipHeight();
 
         if(clipY <= y + getHeight() && clipY + clipHeight >= y) {
+            short[][] pages = glyphPages;
+            GlyphBlock block = null;
             char c;
             for ( int i = 0; i < length; i++ ) {
                 c = data[offset+i];
-                int position = charsets.indexOf(c);
+                short[] page = pages[c >> 8];
+                if(page == null) {
+                    continue;
+                }
+                int position = (page[c & 0xff] & 0xffff) - 1;
                 if(position < 0) {
                     continue;
                 }
                 // draw region is flaky on some devices, use setClip instead
                 g.clipRect(x, y, charWidth[position], imageHeight);
                 if(g.getClipWidth() > 0 && g.getClipHeight() > 0) {
-                    g.drawImage(cache, x - cutOffsets[position], y);
+                    GlyphBlock b = blocks[position / blockGlyphs];
+                    if(b == null || b != block) {
+                        block = getBlock(position);
+                        block.initColor(color);
+                    }
+                    block.drawGlyph(g, position, x, y);
                 }
                 x += charWidth[position];
                 g.setClip(clipX, clipY, clipWidth, clipHeight);
@@ -269,9 +478,19 @@ class CustomFont extends Font {
      * @inheritDoc
      */
     public int charsWidth(char[] ch, int offset, int length){
+        short[][] pages = glyphPages;
+        int[] widths = charWidth;
         int retVal = 0;
-        for(int i=0; i<length; i++){
-            retVal += charWidth(ch[i + offset]);
+        int end = offset + length;
+        for(int i = offset ; i < end ; i++){
+            char c = ch[i];
+            short[] page = pages[c >> 8];
+            if(page != null) {
+                int position = page[c & 0xff] & 0xffff;
+                if(position != 0) {
+                    retVal += widths[position - 1];
+                }
+            }
         }
         return retVal;
     }
@@ -281,7 +500,69 @@ class CustomFont extends Font {
      * @inheritDoc
      */
     public int substringWidth(String str, int offset, int len){
-        return charsWidth(str.toCharArray(), offset, len);
+        short[][] pages = glyphPages;
+        int[] widths = charWidth;
+        int retVal = 0;
+        int end = offset + len;
+        for(int i = offset ; i < end ; i++){
+            char c = str.charAt(i);
+            short[] page = pages[c >> 8];
+            if(page != null) {
+                int position = page[c & 0xff] & 0xffff;
+                if(position != 0) {
+                    retVal += widths[position - 1];
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int charsFit(String str, int offset, int width) {
+        short[][] pages = glyphPages;
+        int[] widths = charWidth;
+        int len = str.length();
+        int total = 0;
+        for(int i = offset ; i < len ; i++){
+            char c = str.charAt(i);
+            short[] page = pages[c >> 8];
+            if(page != null) {
+                int position = page[c & 0xff] & 0xffff;
+                if(position != 0) {
+                    total += widths[position - 1];
+                    if(total > width) {
+                        return i - offset;
+                    }
+                }
+            }
+        }
+        return len - offset;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public int charsFit(char[] ch, int offset, int length, int width) {
+        short[][] pages = glyphPages;
+        int[] widths = charWidth;
+        int total = 0;
+        int end = offset + length;
+        for(int i = offset ; i < end ; i++){
+            char c = ch[i];
+            short[] page = pages[c >> 8];
+            if(page != null) {
+                int position = page[c & 0xff] & 0xffff;
+                if(position != 0) {
+                    total += widths[position - 1];
+                    if(total > width) {
+                        return i - offset;
+                    }
+                }
+            }
+        }
+        return length;
     }
 
     /**
@@ -235,6 +235,8 @@ public final class Display {
 
     private LWUITImplementation impl;
 
+    private BidiCache bidiCache = new BidiCache(64);
+
     private boolean lwuitRunning = false;
 
 
@@ -1947,6 +1949,27 @@ public final class Display {
      */
     public void setBidiAlgorithm(boolean activate) {
         impl.setBidiAlgorithm(activate);
+        bidiCache.clear();
+    }
+
+    /**
+     * Sets the number of strings whose visual bidi ordering is remembered, converting
+     * a string is relatively expensive and the same strings are converted on every
+     * paint. 0 disables the cache.
+     *
+     * @param size the number of strings to remember, 64 by default
+     */
+    public void setBidiCacheSize(int size) {
+        bidiCache.setMaxSize(size);
+    }
+
+    /**
+     * Returns the number of strings whose visual bidi ordering is remembered
+     *
+     * @return the number of strings to remember
+     */
+    public int getBidiCacheSize() {
+        return bidiCache.getMaxSize();
     }
 
     /**
@@ -1962,7 +1985,10 @@ public final class Display {
      * @return a "visual" renderable string
      */
     public String convertBidiLogicalToVisual(String s) {
-        return impl.convertBidiLogicalToVisual(s);
+        if(s == null || s.length() < 2 || !impl.isBidiAlgorithm()) {
+            return impl.convertBidiLogicalToVisual(s);
+        }
+        return bidiCache.toVisual(impl, s);
     }
 
     /**
@@ -1976,7 +2002,10 @@ public final class Display {
      * @return the "visual" location of the cursor
      */
 	public int getCharLocation(String source, int index) {
-        return impl.getCharLocation(source, index);
+        if(source == null || !impl.isBidiAlgorithm()) {
+            return impl.getCharLocation(source, index);
+        }
+        return bidiCache.getCharLocation(impl, source, index);
     }
 
     /**
@@ -224,7 +224,9 @@ public class EncodedImage extends Image {
         if(width > -1) {
             return width;
         }
-        width = getInternalImpl().getWidth();
+        if(!readPNGSize()) {
+            width = getInternalImpl().getWidth();
+        }
         return width;
     }
 
@@ -235,10 +237,34 @@ public class EncodedImage extends Image {
         if(height > -1) {
             return height;
         }
-        height = getInternalImpl().getHeight();
+        if(!readPNGSize()) {
+            height = getInternalImpl().getHeight();
+        }
         return height;
     }
 
+    /**
+     * Reads the dimensions from the header chunk of PNG data so the size of the image
+     * (e.g. a bitmap font) can be queried without decoding it
+     *
+     * @return true if the data is a PNG and the size was read
+     */
+    private boolean readPNGSize() {
+        byte[] d = imageData;
+        if(d == null || d.length < 24 || (d[0] & 0xff) != 0x89 || d[1] != 'P' || d[2] != 'N' || d[3] != 'G' ||
+                d[12] != 'I' || d[13] != 'H' || d[14] != 'D' || d[15] != 'R') {
+            return false;
+        }
+        width = readInt(d, 16);
+        height = readInt(d, 20);
+        return true;
+    }
+
+    private static int readInt(byte[] d, int offset) {
+        return ((d[offset] & 0xff) << 24) | ((d[offset + 1] & 0xff) << 16) |
+                ((d[offset + 2] & 0xff) << 8) | (d[offset + 3] & 0xff);
+    }
+
     /**
      * @inheritDoc
      */
@@ -306,6 +332,13 @@ public class EncodedImage extends Image {
         return getInternalImpl().scaled(width, height);
     }
 
+    /**
+     * @inheritDoc
+     */
+    public Image scaled(int width, int height, int quality) {
+        return getInternalImpl().scaled(width, height, quality);
+    }
+
     /**
      * @inheritDoc
      */
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import com.sun.lwuit.geom.Rectangle;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * The nearest focusable component in every direction for every focusable component
+ * within the content pane of a form. The bounds are gathered into flat arrays in a
+ * single pass and the neighbours are searched on demand using the same rules as the
+ * recursive search of the form, a search is kept until the bounds, focusability or
+ * hierarchy of components change so repeated key presses become lookups.
+ */
+class FocusGraph {
+    static final int UP = 0;
+    static final int DOWN = 1;
+    static final int LEFT = 2;
+    static final int RIGHT = 3;
+
+    /**
+     * Marks a neighbour or chain end that wasn't searched yet
+     */
+    private static final int UNKNOWN = -2;
+
+    private Container root;
+    private int stamp;
+    private int count;
+    private Component[] nodes;
+    private Hashtable indices = new Hashtable();
+    private int[] x;
+    private int[] y;
+    private int[] width;
+    private int[] height;
+
+    /**
+     * The neighbour of node n in direction d is next[d * count + n] or -1,
+     * end holds the last node reached by following the neighbours in that direction,
+     * both are UNKNOWN until they are needed
+     */
+    private int[] next;
+    private int[] end;
+
+    /**
+     * Indicates whether the graph still matches the components under the given root
+     *
+     * @param root the content pane of the form
+     * @return true if the graph can be used
+     */
+    boolean isValid(Container root) {
+        return nodes != null && this.root == root && stamp == Component.focusGraphChanges;
+    }
+
+    /**
+     * Returns the node of the given component
+     *
+     * @param cmp a component
+     * @return the node or -1 if the component isn't a focusable component in the graph
+     */
+    int indexOf(Component cmp) {
+        Integer i = (Integer)indices.get(cmp);
+        if(i == null) {
+            return -1;
+        }
+        return i.intValue();
+    }
+
+    /**
+     * Returns the component focus moves to from the given node
+     *
+     * @param index the node of the focused component
+     * @param direction one of UP, DOWN, LEFT, RIGHT
+     * @param cyclic whether focus wraps to the far end when there is no neighbour
+     * @return the component or null
+     */
+    Component getNext(int index, int direction, boolean cyclic) {
+        int n = next(index, direction);
+        if(n > -1) {
+            return nodes[n];
+        }
+        if(cyclic) {
+            int opposite = direction ^ 1;
+            if(next(index, opposite) > -1) {
+                return nodes[end(index, opposite)];
+            }
+        }
+        return null;
+    }
+
+    private int next(int index, int direction) {
+        int offset = direction * count + index;
+        int n = next[offset];
+        if(n == UNKNOWN) {
+            switch(direction) {
+                case UP:
+                    n = findVertical(index, false);
+                    break;
+                case DOWN:
+                    n = findVertical(index, true);
+                    break;
+                case LEFT:
+                    n = findHorizontal(index, false);
+                    break;
+                default:
+                    n = findHorizontal(index, true);
+                    break;
+            }
+            next[offset] = n;
+        }
+        return n;
+    }
+
+    private int end(int index, int direction) {
+        int offset = direction * count;
+        if(end[offset + index] != UNKNOWN) {
+            return end[offset + index];
+        }
+
+        // neighbours strictly advance along the axis so the walk always terminates
+        int last = index;
+        int n = next(last, direction);
+        while(n > -1 && end[offset + last] == UNKNOWN) {
+            last = n;
+            n = next(last, direction);
+        }
+        int result = end[offset + last] != UNKNOWN ? end[offset + last] : last;
+        int current = index;
+        while(end[offset + current] == UNKNOWN) {
+            end[offset + current] = result;
+            if(next[offset + current] < 0) {
+                break;
+            }
+            current = next[offset + current];
+        }
+        return result;
+    }
+
+    /**
+     * Gathers the bounds of the focusable components under the root in a single pass,
+     * neighbours are searched when they are first needed. Coordinates are taken with
+     * the root unscrolled so scrolling the content pane doesn't invalidate the graph.
+     *
+     * @param root the content pane of the form
+     */
+    void build(Container root) {
+        this.root = root;
+        stamp = Component.focusGraphChanges;
+        Vector v = new Vector();
+        Vector coords = new Vector();
+        collect(root, root.getAbsoluteX() + root.getScrollX(), root.getAbsoluteY() + root.getScrollY(), v, coords);
+        count = v.size();
+        nodes = new Component[count];
+        x = new int[count];
+        y = new int[count];
+        width = new int[count];
+        height = new int[count];
+        indices.clear();
+        for(int iter = 0 ; iter < count ; iter++) {
+            Component cmp = (Component)v.elementAt(iter);
+            int[] pos = (int[])coords.elementAt(iter);
+            nodes[iter] = cmp;
+            x[iter] = pos[0];
+            y[iter] = pos[1];
+            width[iter] = cmp.getWidth();
+            height[iter] = cmp.getHeight();
+            indices.put(cmp, new Integer(iter));
+        }
+        next = new int[count * 4];
+        end = new int[count * 4];
+        for(int iter = 0 ; iter < next.length ; iter++) {
+            next[iter] = UNKNOWN;
+            end[iter] = UNKNOWN;
+        }
+    }
+
+    /**
+     * Gathers the focusable components in the order in which the form searches them
+     */
+    private void collect(Container cnt, int absX, int absY, Vector v, Vector coords) {
+        int count = cnt.getComponentCount();
+        for(int iter = 0 ; iter < count ; iter++) {
+            Component current = cnt.getComponentAt(iter);
+            int currentX = absX + current.getX() - current.getScrollX();
+            int currentY = absY + current.getY() - current.getScrollY();
+            if(current.isFocusable()) {
+                v.addElement(current);
+                coords.addElement(new int[] {currentX, currentY});
+            }
+            if(current instanceof Container && !(((Container)current).isBlockFocus())) {
+                collect((Container)current, currentX, currentY, v, coords);
+            }
+        }
+    }
+
+    private boolean isInSameColumn(int source, int dest) {
+        return Rectangle.intersects(x[source], 0, width[source], Integer.MAX_VALUE,
+                x[dest], y[dest], width[dest], height[dest]);
+    }
+
+    private boolean isInSameRow(int source, int dest) {
+        return Rectangle.intersects(0, y[source], Integer.MAX_VALUE, height[source],
+                x[dest], y[dest], width[dest], height[dest]);
+    }
+
+    private int findHorizontal(int focused, boolean right) {
+        int bestCandidate = -1;
+        int focusedX = x[focused];
+        for(int iter = 0 ; iter < count ; iter++) {
+            if(!isInSameRow(focused, iter)) {
+                continue;
+            }
+            int currentX = x[iter];
+            if(right) {
+                if(focusedX < currentX) {
+                    if(bestCandidate > -1 && x[bestCandidate] < currentX) {
+                        continue;
+                    }
+                    bestCandidate = iter;
+                }
+            } else {
+                if(focusedX > currentX) {
+                    if(bestCandidate > -1 && x[bestCandidate] > currentX) {
+                        continue;
+                    }
+                    bestCandidate = iter;
+                }
+            }
+        }
+        return bestCandidate;
+    }
+
+    private int findVertical(int focused, boolean down) {
+        int bestCandidate = -1;
+        int focusedY = y[focused];
+        for(int iter = 0 ; iter < count ; iter++) {
+            int currentY = y[iter];
+            if(down ? focusedY < currentY : focusedY > currentY) {
+                if(bestCandidate > -1) {
+                    boolean exitingInSame = isInSameColumn(focused, bestCandidate);
+                    if(down ? y[bestCandidate] < currentY : y[bestCandidate] > currentY) {
+                        if(exitingInSame) {
+                            continue;
+                        }
+                        if(isInSameRow(iter, bestCandidate) && !isInSameColumn(focused, iter)) {
+                            continue;
+                        }
+                    }
+                    if(exitingInSame && isInSameRow(iter, bestCandidate)) {
+                        continue;
+                    }
+                }
+                bestCandidate = iter;
+            }
+        }
+        return bestCandidate;
+    }
+}
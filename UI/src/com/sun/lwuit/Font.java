@@ -118,8 +118,18 @@ public class Font {
 
     private static boolean enableBitmapFont = true;
 
+    private static int widthCacheSize = 64;
+
     private Object font;
 
+    /**
+     * Direct mapped cache of recently measured strings and their widths, the slot
+     * of a string is derived from its hash code so lookups never allocate. A slot
+     * holds the string and its width in one immutable entry so a form prepared off
+     * the EDT can measure with a font while the EDT paints with it.
+     */
+    private WidthEntry[] widthCache;
+
     /**
      * Creates a new Font
      */
@@ -154,6 +164,35 @@ public class Font {
         bitmapCache.clear();
     }
 
+    /**
+     * Sets the number of string widths each font instance remembers, measuring the
+     * width of a string with a system font is a native call on most platforms and
+     * the same strings are measured repeatedly during layout and painting. The value
+     * is rounded up to a power of two, 0 disables the cache. This only affects fonts
+     * that haven't measured a string yet.
+     *
+     * @param size the number of widths cached per font, 64 by default
+     */
+    public static void setWidthCacheSize(int size) {
+        int s = 0;
+        if(size > 0) {
+            s = 1;
+            while(s < size) {
+                s <<= 1;
+            }
+        }
+        widthCacheSize = s;
+    }
+
+    /**
+     * Returns the number of string widths each font instance remembers
+     *
+     * @return the number of widths cached per font
+     */
+    public static int getWidthCacheSize() {
+        return widthCacheSize;
+    }
+
     /**
      * Returns true if the underlying platform supports loading truetype fonts from
      * a file stream.
@@ -300,7 +339,92 @@ public class Font {
         if(str == null || str.length() == 0) {
             return 0;
         }
-        return Display.getInstance().getImplementation().stringWidth(font, str);
+        WidthEntry[] cache = widthCache;
+        if(cache == null) {
+            if(widthCacheSize == 0) {
+                return Display.getInstance().getImplementation().stringWidth(font, str);
+            }
+            cache = new WidthEntry[widthCacheSize];
+            widthCache = cache;
+        }
+        int slot = str.hashCode() & (cache.length - 1);
+        WidthEntry e = cache[slot];
+        if(e != null && (e.key == str || e.key.equals(str))) {
+            return e.width;
+        }
+        int w = Display.getInstance().getImplementation().stringWidth(font, str);
+        cache[slot] = new WidthEntry(str, w);
+        return w;
+    }
+
+    /**
+     * A measured string and its width
+     */
+    static class WidthEntry {
+        final String key;
+        final int width;
+
+        WidthEntry(String key, int width) {
+            this.key = key;
+            this.width = width;
+        }
+    }
+
+    /**
+     * Returns the number of characters starting at the given offset that fit within
+     * the given width when drawn with this font. This allows truncating text in a
+     * single pass rather than measuring a growing substring repeatedly.
+     *
+     * @param str the given string
+     * @param offset the offset within the string from which to measure
+     * @param width the available width in pixels
+     * @return the number of characters from offset whose combined width doesn't
+     * exceed the given width
+     */
+    public int charsFit(String str, int offset, int width) {
+        int len = str.length();
+        int total = 0;
+        int count = 0;
+        for(int iter = offset ; iter < len ; iter++) {
+            total += charWidth(str.charAt(iter));
+            if(total > width) {
+                break;
+            }
+            count++;
+        }
+        // per character widths can differ from the string width due to kerning
+        while(count > 0 && substringWidth(str, offset, count) > width) {
+            count--;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of characters within the given range that fit within the
+     * given width when drawn with this font.
+     *
+     * @param ch array of characters
+     * @param offset characters offsets
+     * @param length the maximum number of characters to measure
+     * @param width the available width in pixels
+     * @return the number of characters from offset whose combined width doesn't
+     * exceed the given width
+     */
+    public int charsFit(char[] ch, int offset, int length, int width) {
+        int total = 0;
+        int count = 0;
+        for(int iter = 0 ; iter < length ; iter++) {
+            total += charWidth(ch[offset + iter]);
+            if(total > width) {
+                break;
+            }
+            count++;
+        }
+        // per character widths can differ from the string width due to kerning
+        while(count > 0 && charsWidth(ch, offset, count) > width) {
+            count--;
+        }
+        return count;
     }
     
     /**
@@ -145,6 +145,12 @@ public class Form extends Container {
      */
     private boolean cyclicFocus = true;
 
+    /**
+     * The nearest focusable component in every direction, rebuilt lazily once
+     * components change
+     */
+    private FocusGraph focusGraph;
+
     private int tactileTouchDuration;
 
     private EventDispatcher showListener;
@@ -154,6 +160,16 @@ public class Form extends Container {
 
     private EventDispatcher orientationListener;
 
+    /**
+     * Layout snapshots keyed by the size of the form, null if snapshots are disabled
+     */
+    private Hashtable layoutSnapshots;
+
+    /**
+     * The maximum number of display sizes for which snapshots are kept
+     */
+    private static final int MAX_LAYOUT_SNAPSHOTS = 4;
+
     /**
      * Default constructor creates a simple form
      */
@@ -307,6 +323,15 @@ public class Form extends Container {
      * @param h the new height of the Form
      */
     void sizeChangedInternal(int w, int h) {
+        if(layoutSnapshots != null) {
+            LayoutSnapshot current = LayoutSnapshot.capture(this);
+            if(current != null) {
+                if(layoutSnapshots.size() >= MAX_LAYOUT_SNAPSHOTS) {
+                    layoutSnapshots.clear();
+                }
+                layoutSnapshots.put(getSnapshotKey(getWidth(), getHeight()), current);
+            }
+        }
         sizeChanged(w, h);
         if(orientationListener != null) {
             orientationListener.fireActionEvent(new ActionEvent(this));
@@ -315,11 +340,70 @@ public class Form extends Container {
         w = w - (formStyle.getMargin(isRTL(), Component.LEFT) + formStyle.getMargin(isRTL(), Component.RIGHT));
         h = h - (formStyle.getMargin(false, Component.TOP) + formStyle.getMargin(false, Component.BOTTOM));
         setSize(new Dimension(w, h));
-        setShouldCalcPreferredSize(true);
-        doLayout();
+
+        // the layout for the new size doesn't change the hierarchy so it shouldn't
+        // invalidate the snapshots
+        Component.setPreferredSizeChangesSuspended(true);
+        try {
+            setShouldCalcPreferredSize(true);
+            boolean restored = false;
+            if(layoutSnapshots != null) {
+                Integer key = getSnapshotKey(w, h);
+                LayoutSnapshot previous = (LayoutSnapshot)layoutSnapshots.get(key);
+                if(previous != null) {
+                    restored = previous.restore(this);
+                    if(!restored) {
+                        // a snapshot that failed its check can never become valid again
+                        layoutSnapshots.remove(key);
+                    }
+                }
+            }
+            if(!restored) {
+                doLayout();
+            }
+        } finally {
+            Component.setPreferredSizeChangesSuspended(false);
+        }
         repaint();
     }
 
+    private static Integer getSnapshotKey(int w, int h) {
+        return new Integer((w << 16) | (h & 0xffff));
+    }
+
+    /**
+     * Indicates whether the form keeps a snapshot of its layout for every display size
+     * it was laid out for. When the display size changes back to a size the form was
+     * laid out for (e.g. rotating the device back) the bounds and preferred sizes of the
+     * components are restored instead of laying out the form again. A snapshot is only
+     * restored if no component requested to recalculate its preferred size (e.g. by
+     * changing its text, style or children) since the snapshot was taken. Notice that
+     * these requests are counted globally, a change to a component of any form (e.g.
+     * a form updated in the background) invalidates the snapshots of all forms. This
+     * trades memory for faster rotation and is disabled by default.
+     *
+     * @param enabled true to keep layout snapshots
+     */
+    public void setLayoutSnapshotsEnabled(boolean enabled) {
+        if(enabled) {
+            if(layoutSnapshots == null) {
+                layoutSnapshots = new Hashtable();
+            }
+        } else {
+            layoutSnapshots = null;
+        }
+    }
+
+    /**
+     * Indicates whether the form keeps a snapshot of its layout for every display size
+     * it was laid out for
+     *
+     * @return true if layout snapshots are kept
+     */
+    public boolean isLayoutSnapshotsEnabled() {
+        return layoutSnapshots != null;
+    }
+
     /**
      * Allows a developer that doesn't derive from the form to draw on top of the 
      * form regardless of underlying changes or animations. This is useful for
@@ -1139,6 +1223,39 @@ public class Form extends Container {
         }
     }
 
+    /**
+     * Prepares the form for display by styling it and laying it out at the current
+     * display size. This allows a large form to be constructed and laid out on a
+     * background thread so showing it doesn't perform the layout on the EDT.
+     * <p>This method may be invoked from any thread provided that:
+     * <ul>
+     * <li>The form isn't showing and won't be shown until this method returns</li>
+     * <li>No other thread (including the EDT) accesses the form or its components
+     * while it is being prepared</li>
+     * <li>The theme isn't changed while the form is being prepared, a form prepared
+     * before a theme change should be refreshed with refreshTheme()</li>
+     * </ul>
+     * Fonts and images shared with forms that are showing are measured while the EDT
+     * paints with them, the width cache of Font is safe for such concurrent use.
+     * Once prepared the form is owned by the EDT, it should be shown and modified
+     * only from the EDT e.g. within a callSerially() block. Initialization of the
+     * components (animations, tickers, native commands etc.) still occurs when the form
+     * is shown since it binds to state owned by the EDT. If the display size changed
+     * in the meantime the form is laid out again when it is shown. Dialogs are sized
+     * when they are shown so they gain little from this method.
+     * 
+     * @throws IllegalStateException if the form is currently showing
+     */
+    public void prepare() {
+        Display d = Display.getInstance();
+        if(isInitialized() || d.getCurrent() == this) {
+            throw new IllegalStateException("Can't prepare a form that is showing");
+        }
+        setSize(new Dimension(d.getDisplayWidth(), d.getDisplayHeight()));
+        setShouldCalcPreferredSize(true);
+        layoutContainer();
+    }
+
     /**
      * Displays the current form on the screen
      */
@@ -2168,6 +2285,13 @@ public class Form extends Container {
      * @return a focusable Component or null if not found
      */
     public Component findNextFocusVertical(boolean down) {
+        if(focused != null) {
+            FocusGraph graph = getFocusGraph();
+            int index = graph.indexOf(focused);
+            if(index > -1) {
+                return graph.getNext(index, down ? FocusGraph.DOWN : FocusGraph.UP, cyclicFocus);
+            }
+        }
         Component c = findNextFocusVertical(focused, null, contentPane, down);
         if(c != null) {
             return c;
@@ -2193,6 +2317,13 @@ public class Form extends Container {
      * @return a focusable Component or null if not found
      */
     public Component findNextFocusHorizontal(boolean right) {
+        if(focused != null) {
+            FocusGraph graph = getFocusGraph();
+            int index = graph.indexOf(focused);
+            if(index > -1) {
+                return graph.getNext(index, right ? FocusGraph.RIGHT : FocusGraph.LEFT, cyclicFocus);
+            }
+        }
         Component c = findNextFocusHorizontal(focused, null, contentPane, right);
         if(c != null) {
             return c;
@@ -2211,6 +2342,20 @@ public class Form extends Container {
         return null;
     }
 
+    /**
+     * Returns the focus navigation graph of the content pane building it again if
+     * components changed since it was built
+     */
+    private FocusGraph getFocusGraph() {
+        if(focusGraph == null) {
+            focusGraph = new FocusGraph();
+        }
+        if(!focusGraph.isValid(contentPane)) {
+            focusGraph.build(contentPane);
+        }
+        return focusGraph;
+    }
+
     Component findNextFocusDown() {
         if(focused != null) {
             if(focused.getNextFocusDown() != null) {
@@ -506,6 +506,13 @@ public final class Graphics {
         impl.drawImage(nativeGraphics, img, x + xTranslate, y + yTranslate);
     }
 
+    /**
+     * Draws a native alpha mask in the current color
+     */
+    void drawAlphaMask(Object mask, int x, int y) {
+        impl.drawAlphaMask(nativeGraphics, mask, x + xTranslate, y + yTranslate, getColor());
+    }
+
     /**
      * Draws an image with a MIDP trasnform for fast rotation
      */
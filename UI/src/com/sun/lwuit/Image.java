@@ -36,6 +36,24 @@ import java.util.Hashtable;
  * @author Chen Fishbein
  */
 public class Image {
+    /**
+     * Scaling quality hint for nearest neighbour scaling, this is the fastest mode
+     * and the one used by scaled(int, int)
+     */
+    public static final int SCALE_NEAREST = 0;
+
+    /**
+     * Scaling quality hint for bilinear interpolation, suitable for enlarging images
+     * or mild reductions
+     */
+    public static final int SCALE_BILINEAR = 1;
+
+    /**
+     * Scaling quality hint for averaging all the source pixels covered by a destination
+     * pixel, suitable for large reductions such as thumbnails
+     */
+    public static final int SCALE_AREA_AVERAGE = 2;
+
     private Object rgbCache;
     private Object image;   
     int transform;
@@ -85,7 +103,7 @@ public class Image {
      * @param size the size of the cached image
      * @return cached image
      */
-    Image getCachedImage(Dimension size) {
+    Image getCachedImage(Object size) {
         Object w = getScaleCache().get(size);
         return (Image)Display.getInstance().extractHardRef(w);
     } 
@@ -96,7 +114,7 @@ public class Image {
      * @param size the size of the cached image
      * @return cached image
      */
-    void cacheImage(Dimension size, Image i) {
+    void cacheImage(Object size, Image i) {
         Object w = Display.getInstance().createSoftWeakRef(i);
         getScaleCache().put(size, w);
     }
@@ -183,12 +201,20 @@ public class Image {
      * @return mask object that can be used with applyMask
      */
     public Object createMask() {
-        int[] rgb = getRGBCached();
-        byte[] mask = new byte[rgb.length];
-        for(int iter = 0 ; iter < rgb.length ; iter++) {
-            mask[iter] = (byte)(rgb[iter] & 0xff);
+        RGBView v = getRGBView();
+        int[] rgb = v.getData();
+        int width = v.getWidth();
+        int height = v.getHeight();
+        byte[] mask = new byte[width * height];
+        int offset = 0;
+        for(int y = 0 ; y < height ; y++) {
+            int rowStart = v.getOffset() + y * v.getStride();
+            for(int x = 0 ; x < width ; x++) {
+                mask[offset] = (byte)(rgb[rowStart + x] & 0xff);
+                offset++;
+            }
         }
-        return new IndexedImage(getWidth(), getHeight(), null, mask);
+        return new IndexedImage(width, height, null, mask);
     }
 
     /**
@@ -737,6 +763,28 @@ public class Image {
         return r;
     }
 
+    /**
+     * Returns a read only view of the ARGB pixels of this image. When the platform
+     * keeps the pixels in an int array the view lends that array without copying
+     * it, otherwise the view wraps the array returned by getRGBCached(). Either way
+     * the data array of the view must not be modified, use RGBView.toArray() or 
+     * getRGB() to obtain a modifiable copy. Some platforms stop accelerating an
+     * image once its pixel array was lent so this should only be used when the
+     * pixels are actually needed.
+     *
+     * @return view of the pixels in this image
+     */
+    public RGBView getRGBView() {
+        if(image != null && transform == 0) {
+            RGBView v = Display.getInstance().getImplementation().getRGBView(image);
+            if(v != null) {
+                return v;
+            }
+        }
+        int w = getWidth();
+        return new RGBView(getRGBCached(), 0, w, w, getHeight(), true);
+    }
+
     int[] getRGBCache() {
         if(rgbCache != null) {
             int[] rgb = (int[])Display.getInstance().extractHardRef(rgbCache);
@@ -839,6 +887,42 @@ public class Image {
         return i;
     }
 
+    /**
+     * Returns a scaled version of this image using the given quality hint, platforms
+     * that don't support the hint (and images that aren't backed by a native bitmap)
+     * fall back to scaled(int, int). The method accepts -1 to preserve aspect ratio
+     * in the given axis.
+     * 
+     * @param width width for the scaling
+     * @param height height of the scaled image
+     * @param quality one of SCALE_NEAREST, SCALE_BILINEAR or SCALE_AREA_AVERAGE
+     * @return new image instance scaled to the given height and width
+     */
+    public Image scaled(int width, int height, int quality) {
+        if(quality == SCALE_NEAREST || image == null || svgData != null || animated) {
+            return scaled(width, height);
+        }
+        if(width == -1) {
+            width = Math.max(1, (int)(getWidth() * (((float)height) / ((float)getHeight()))));
+        } else {
+            if(height == -1) {
+                height = Math.max(1, (int)(getHeight() * (((float)width) / ((float)getWidth()))));
+            }
+        }
+        if(width == getWidth() && height == getHeight()) {
+            return this;
+        }
+        String key = width + "x" + height + "@" + quality;
+        Image i = getCachedImage(key);
+        if(i != null) {
+            return i;
+        }
+        i = new Image(Display.getInstance().getImplementation().scale(image, width, height, quality));
+        i.transform = this.transform;
+        cacheImage(key, i);
+        return i;
+    }
+
     /**
      * Returns the platform specific image implementation, <strong>warning</strong> the
      * implementation class can change between revisions of LWUIT and platforms.
@@ -47,6 +47,30 @@ public class IndexedImage extends Image {
     // package protected for access by the resource editor
     byte[] imageDataByte;
     int[] palette; 
+
+    /**
+     * Size of the open addressing table mapping ARGB values to palette offsets, must
+     * be a power of 2 and at least twice the maximum palette size
+     */
+    private static final int PALETTE_HASH_SIZE = 512;
+
+    /**
+     * Maximum number of pixels expanded into the shared line cache in a single
+     * drawRGB call
+     */
+    private static final int LINE_CACHE_PIXELS = 8192;
+
+    // shared buffer into which palette offsets are expanded to ARGB for drawing
+    static int[] lineCache;
+
+    // the area currently held in the line cache, this allows repeated drawing of
+    // the same image area to skip the palette expansion entirely
+    private static Object lineCacheData;
+    private static int[] lineCachePalette;
+    private static int lineCacheX;
+    private static int lineCacheY;
+    private static int lineCacheWidth;
+    private static int lineCacheHeight;
     
     /**
      * Creates an indexed image with byte data
@@ -80,39 +104,6 @@ public class IndexedImage extends Image {
         }
     }
 
-    /**
-     * Converts an image to a package image after which the original image can be GC'd
-     */
-    private IndexedImage(int width, int height, int[] palette, int[] rgb) {
-        super(null);
-        
-        this.width = width;
-        this.height = height;
-        this.palette = palette;
-        
-        // byte based package image
-        imageDataByte = new byte[width * height];
-        for(int iter = 0 ; iter < imageDataByte.length ; iter++) {
-            imageDataByte[iter] = (byte)paletteOffset(rgb[iter]);
-        }
-        initOpaque();
-    }
-
-    /**
-     * Finds the offset within the palette of the given rgb value
-     * 
-     * @param value ARGB value from the image
-     * @return offset within the palette array
-     */
-    private int paletteOffset(int rgb) {
-        for(int iter = 0 ; iter < palette.length ; iter++) {
-            if(rgb == palette[iter]) {
-                return iter;
-            }
-        }
-        throw new IllegalStateException("Invalid palette request in paletteOffset");
-    }
-
     /**
      * Packs the image loaded by MIDP
      * 
@@ -129,21 +120,116 @@ public class IndexedImage extends Image {
      */
     public Image subImage(int x, int y, int width, int height, boolean processAlpha)  {
         byte[] arr = new byte[width * height];
-        for(int iter = 0 ; iter < arr.length ; iter++) {
-            int destY = iter / width;
-            int destX = iter % width;
-            int offset = x + destX + ((y + destY) * this.width);
-            arr[iter] = imageDataByte[offset];
+        int srcOffset = x + y * this.width;
+        int destOffset = 0;
+        for(int row = 0 ; row < height ; row++) {
+            System.arraycopy(imageDataByte, srcOffset, arr, destOffset, width);
+            srcOffset += this.width;
+            destOffset += width;
         }
         
         return new IndexedImage(width, height, palette, arr);
     }
 
     /**
-     * Unsupported in the current version, this method will be implemented in a future release
+     * Rotates the image by working directly on the palette offsets. Right angles
+     * are rotated losslessly and support non square images, other angles assume a
+     * square image (as does Image.rotate) and require a transparent entry in the
+     * palette or a free palette slot, otherwise the closest right angle is used.
+     *
+     * @param degrees the rotation angle
+     * @return new image instance with the closest possible rotation
      */
     public Image rotate(int degrees) {
-        throw new RuntimeException("The rotate method is not supported by indexed images at the moment");
+        degrees %= 360;
+        if(degrees < 0) {
+            degrees += 360;
+        }
+        if(degrees == 0) {
+            return this;
+        }
+        if(degrees % 90 != 0) {
+            int[] newPalette = paletteWithTransparency();
+            if(newPalette != null) {
+                return rotateArbitrary(degrees, newPalette);
+            }
+        }
+        int quadrants = ((degrees + 45) / 90) % 4;
+        if(quadrants == 0) {
+            return this;
+        }
+        int newWidth = width;
+        int newHeight = height;
+        if(quadrants != 2) {
+            newWidth = height;
+            newHeight = width;
+        }
+        byte[] arr = new byte[imageDataByte.length];
+        int srcOffset = 0;
+        for(int y = 0 ; y < height ; y++) {
+            for(int x = 0 ; x < width ; x++) {
+                int destX;
+                int destY;
+                switch(quadrants) {
+                    case 1:
+                        destX = height - 1 - y;
+                        destY = x;
+                        break;
+                    case 2:
+                        destX = width - 1 - x;
+                        destY = height - 1 - y;
+                        break;
+                    default:
+                        destX = y;
+                        destY = width - 1 - x;
+                        break;
+                }
+                arr[destX + destY * newWidth] = imageDataByte[srcOffset];
+                srcOffset++;
+            }
+        }
+        return new IndexedImage(newWidth, newHeight, palette, arr);
+    }
+
+    /**
+     * Returns a palette whose last entry is fully transparent, this is the current
+     * palette if it already has such an entry. Returns null if the palette is full.
+     */
+    private int[] paletteWithTransparency() {
+        int len = palette.length;
+        if(len > 0 && palette[len - 1] == 0) {
+            return palette;
+        }
+        if(len > 255) {
+            return null;
+        }
+        int[] newPalette = new int[len + 1];
+        System.arraycopy(palette, 0, newPalette, 0, len);
+        return newPalette;
+    }
+
+    private Image rotateArbitrary(int degrees, int[] newPalette) {
+        byte transparent = (byte)(newPalette.length - 1);
+        byte[] arr = new byte[imageDataByte.length];
+        int centerX = width / 2;
+        int centerY = height / 2;
+        double radians = Math.toRadians(-degrees);
+        double cosDeg = Math.cos(radians);
+        double sinDeg = Math.sin(radians);
+        int destOffset = 0;
+        for(int y = 0 ; y < height ; y++) {
+            for(int x = 0 ; x < width ; x++) {
+                int x2 = (int)Math.floor(cosDeg * (x - centerX) - sinDeg * (y - centerY) + centerX + 0.5);
+                int y2 = (int)Math.floor(sinDeg * (x - centerX) + cosDeg * (y - centerY) + centerY + 0.5);
+                if(x2 < 0 || y2 < 0 || x2 >= width || y2 >= height) {
+                    arr[destOffset] = transparent;
+                } else {
+                    arr[destOffset] = imageDataByte[x2 + y2 * width];
+                }
+                destOffset++;
+            }
+        }
+        return new IndexedImage(width, height, newPalette, arr);
     }
 
     /**
@@ -201,18 +287,44 @@ public class IndexedImage extends Image {
     public static IndexedImage pack(int[] rgb, int width, int height) {
         int arrayLength = width * height;
         
-        // using a Vector is slower for a small scale device and this is mission critical code
+        // using a Vector/Hashtable is slower for a small scale device and this is mission 
+        // critical code. We map colors to palette offsets using an open addressing table,
+        // offsets are stored + 1 so 0 indicates an empty slot
+        int[] hashKeys = new int[PALETTE_HASH_SIZE];
+        short[] hashValues = new short[PALETTE_HASH_SIZE];
         int[] tempPalette = new int[256];
         int paletteLocation = 0;
+        byte[] data = new byte[arrayLength];
+        int lastColor = 0;
+        int lastOffset = -1;
         for(int iter = 0 ; iter < arrayLength ; iter++) {
             int current = rgb[iter];
-            if(!contains(tempPalette, paletteLocation, current)) {
-                if(paletteLocation > 255) {
-                    return null;
+            
+            // adjacent pixels are very often identical so we can skip the lookup
+            if(current != lastColor || lastOffset < 0) {
+                int slot = paletteHash(current);
+                while(true) {
+                    int value = hashValues[slot];
+                    if(value == 0) {
+                        if(paletteLocation > 255) {
+                            return null;
+                        }
+                        tempPalette[paletteLocation] = current;
+                        paletteLocation++;
+                        hashKeys[slot] = current;
+                        hashValues[slot] = (short)paletteLocation;
+                        lastOffset = paletteLocation - 1;
+                        break;
+                    }
+                    if(hashKeys[slot] == current) {
+                        lastOffset = value - 1;
+                        break;
+                    }
+                    slot = (slot + 1) & (PALETTE_HASH_SIZE - 1);
                 }
-                tempPalette[paletteLocation] = current;
-                paletteLocation++;
+                lastColor = current;
             }
+            data[iter] = (byte)lastOffset;
         }
 
         // we need to "shrink" the palette array
@@ -222,9 +334,15 @@ public class IndexedImage extends Image {
             tempPalette = newArray;
         }
         
-        
-        IndexedImage i = new IndexedImage(width, height, tempPalette, rgb);
-        return i;
+        return new IndexedImage(width, height, tempPalette, data);
+    }
+
+    /**
+     * Hashes an ARGB value into a slot of the palette table
+     */
+    private static int paletteHash(int rgb) {
+        int h = rgb * 0x9E3779B1;
+        return (h ^ (h >>> 16)) & (PALETTE_HASH_SIZE - 1);
     }
     
     /**
@@ -237,7 +355,7 @@ public class IndexedImage extends Image {
     public static Image pack(final Image sourceImage) {
         int width = sourceImage.getWidth();
         int height = sourceImage.getHeight();
-        int[] rgb = sourceImage.getRGBCached();
+        int[] rgb = sourceImage.getRGBView().toPackedArray();
         
         Image i = pack(rgb, width, height);
         if(i == null) {
@@ -246,53 +364,65 @@ public class IndexedImage extends Image {
         return i;
     }
     
-    
     /**
-     * Searches the array up to "length" and returns true if value is within the
-     * array up to that point.
+     * Invalidates the area held in the shared line cache, subclasses that write
+     * into the line cache directly must invoke this method
      */
-    private static boolean contains(int[] array, int length, int value) {
-        for(int iter = 0 ; iter < length ; iter++) {
-            if(array[iter] == value) {
-                return true;
-            }
-        }
-        return false;
+    static void invalidateLineCache() {
+        lineCacheData = null;
+        lineCachePalette = null;
+    }
+
+    private boolean isLineCacheValid(int x, int y, int w, int h) {
+        return lineCachePalette == palette && lineCacheX == x && lineCacheY == y && 
+            lineCacheWidth == w && lineCacheHeight == h && lineCacheData != null &&
+            Display.getInstance().extractHardRef(lineCacheData) == imageDataByte;
     }
-    
-    static int[] lineCache;
     
     /**
      * @inheritDoc
      */
     protected void drawImage(Graphics g, Object nativeGraphics, int x, int y) {
-         if(lineCache == null || lineCache.length < width * 3) {
-             lineCache = new int[width * 3];
-         }
-        
         // for performance we can calculate the visible drawing area so we don't have to
-        // calculate the whole array
+        // expand the whole array
+        int clipX = g.getClipX();
         int clipY = g.getClipY();
-        int clipBottomY = g.getClipHeight() + clipY;
-        int firstLine = 0;
-        int lastLine = height;
-        if(clipY > y) {
-            firstLine = clipY - y;
-        } 
-        if(clipBottomY < y + height) {
-            lastLine = clipBottomY - y;
+        int firstColumn = Math.max(0, clipX - x);
+        int lastColumn = Math.min(width, clipX + g.getClipWidth() - x);
+        int firstLine = Math.max(0, clipY - y);
+        int lastLine = Math.min(height, clipY + g.getClipHeight() - y);
+        int visibleWidth = lastColumn - firstColumn;
+        if(visibleWidth <= 0 || lastLine <= firstLine) {
+            return;
         }
         
+        int rowsPerChunk = Math.max(1, Math.min(lastLine - firstLine, LINE_CACHE_PIXELS / visibleWidth));
+        int bufferSize = rowsPerChunk * visibleWidth;
+        if(lineCache == null || lineCache.length < bufferSize) {
+            lineCache = new int[bufferSize];
+            invalidateLineCache();
+        }
         
-        for(int line = firstLine ; line < lastLine ; line += 3) {
-            int currentPos = line * width;
-            int rowsToDraw = Math.min(3, height - line);
-            int amount = width * rowsToDraw;
-            for(int position = 0 ; position < amount ; position++) {
-                int i = imageDataByte[position + currentPos] & 0xff;                
-                lineCache[position] = palette[i];
+        for(int line = firstLine ; line < lastLine ; line += rowsPerChunk) {
+            int rowsToDraw = Math.min(rowsPerChunk, lastLine - line);
+            if(!isLineCacheValid(firstColumn, line, visibleWidth, rowsToDraw)) {
+                int srcPos = line * width + firstColumn;
+                int destPos = 0;
+                for(int row = 0 ; row < rowsToDraw ; row++) {
+                    for(int column = 0 ; column < visibleWidth ; column++) {
+                        lineCache[destPos + column] = palette[imageDataByte[srcPos + column] & 0xff];
+                    }
+                    srcPos += width;
+                    destPos += visibleWidth;
+                }
+                lineCacheData = Display.getInstance().createSoftWeakRef(imageDataByte);
+                lineCachePalette = palette;
+                lineCacheX = firstColumn;
+                lineCacheY = line;
+                lineCacheWidth = visibleWidth;
+                lineCacheHeight = rowsToDraw;
             }
-            g.drawRGB(lineCache, 0, x, y + line, width, rowsToDraw, true);
+            g.drawRGB(lineCache, 0, x + firstColumn, y + line, visibleWidth, rowsToDraw, true);
         }
     }    
 
@@ -334,6 +464,9 @@ public class IndexedImage extends Image {
         }
         Dimension d = new Dimension(width, height);
         Image i = getCachedImage(d);
+        if(i != null) {
+            return i;
+        }
         // currently we only support byte data...
         i = new IndexedImage(width, height, palette, scaleArray(imageDataByte, width, height));
         cacheImage(d, i);
@@ -350,25 +483,29 @@ public class IndexedImage extends Image {
         }
         byte[] destinationArray = new byte[width * height];
         
-        //Horizontal Resize
+        // nearest neighbour in 16.16 fixed point, we walk the destination row by row
+        // and copy entire runs when the source row doesn't change
         int yRatio = (srcHeight << 16) / height;
         int xRatio = (srcWidth << 16) / width;
-        int xPos = xRatio / 2;
         int yPos = yRatio / 2;
-        for (int x = 0; x < width; x++) {
-            int srcX = xPos >> 16;
-            for(int y = 0 ; y < height ; y++) {
-                int srcY = yPos >> 16;
-                int destPixel = x + y * width;
-                int srcPixel = srcX + srcY * srcWidth;
-                if((destPixel >= 0 && destPixel < destinationArray.length) && 
-                    (srcPixel >= 0 && srcPixel < sourceArray.length)) {
-                    destinationArray[destPixel] = sourceArray[srcPixel];
+        int destPixel = 0;
+        int previousSrcY = -1;
+        for(int y = 0 ; y < height ; y++) {
+            int srcY = Math.min(yPos >> 16, srcHeight - 1);
+            if(srcY == previousSrcY) {
+                System.arraycopy(destinationArray, destPixel - width, destinationArray, destPixel, width);
+                destPixel += width;
+            } else {
+                int srcRow = srcY * srcWidth;
+                int xPos = xRatio / 2;
+                for(int x = 0 ; x < width ; x++) {
+                    destinationArray[destPixel] = sourceArray[srcRow + Math.min(xPos >> 16, srcWidth - 1)];
+                    destPixel++;
+                    xPos += xRatio;
                 }
-                yPos += yRatio;
+                previousSrcY = srcY;
             }
-            yPos = yRatio / 2;
-            xPos += xRatio;
+            yPos += yRatio;
         }
         return destinationArray;
     }
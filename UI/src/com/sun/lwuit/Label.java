@@ -62,6 +62,19 @@ public class Label extends Component {
     private boolean rightToLeft;
     
     private boolean endsWith3Points = true;
+
+    /**
+     * Cached text layout, the width of the text in layoutFont and the "..." truncated
+     * version of the text for the available width truncatedSpace. The layout is keyed
+     * on the text and font instances so changing either recomputes it. The placement
+     * of the icon and text isn't cached, it is a few additions once the widths are
+     * known and depends on the size, style, icons and gap of the label.
+     */
+    private String layoutText;
+    private Font layoutFont;
+    private int layoutTextWidth;
+    private int truncatedSpace;
+    private String truncatedText;
     
     /** 
      * Constructs a new label with the specified string of text, left justified.
@@ -352,7 +365,7 @@ public class Label extends Component {
             return false;
         }
         Style style = getStyle();
-        int txtW = style.getFont().stringWidth(getText());
+        int txtW = getTextWidth(style.getFont());
         int textSpaceW = getAvaliableSpaceForText();
         return txtW > textSpaceW && textSpaceW > 0;
     }
@@ -467,6 +480,55 @@ public class Label extends Component {
     public boolean isEndsWith3Points() {
         return endsWith3Points;
     }
+
+    private void validateTextLayout(String t, Font f) {
+        if(t != layoutText || f != layoutFont) {
+            layoutText = t;
+            layoutFont = f;
+            layoutTextWidth = f.stringWidth(t);
+            truncatedText = null;
+        }
+    }
+
+    /**
+     * Returns the width of the label text when drawn in the given font, the value
+     * is measured once and kept until the text or the font change
+     *
+     * @param f the font in which the text is drawn
+     * @return the width of the text in pixels
+     */
+    public int getTextWidth(Font f) {
+        String t = getText();
+        if(t == null || t.length() == 0) {
+            return 0;
+        }
+        validateTextLayout(t, f);
+        return layoutTextWidth;
+    }
+
+    /**
+     * Returns the text truncated to fit within the given width with "..." appended
+     * at the end, the result is kept until the text, font or width change so a
+     * label that doesn't fit isn't measured again on every paint
+     *
+     * @param f the font in which the text is drawn
+     * @param width the space available for the text
+     * @return the truncated text
+     */
+    public String getTruncatedText(Font f, int width) {
+        String t = getText();
+        if(t == null || t.length() == 0) {
+            return "";
+        }
+        validateTextLayout(t, f);
+        if(truncatedText == null || truncatedSpace != width) {
+            String points = "...";
+            int index = f.charsFit(t, 0, width - f.stringWidth(points) - 1);
+            truncatedText = t.substring(0, Math.max(1, index)) + points;
+            truncatedSpace = width;
+        }
+        return truncatedText;
+    }
     
     
     
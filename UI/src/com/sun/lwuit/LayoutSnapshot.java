@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import java.util.Vector;
+
+/**
+ * The bounds and preferred sizes of all the components of a form laid out for one
+ * display size. A form that rotates back to a display size it was laid out for
+ * restores the snapshot instead of laying out again, provided no component requested
+ * to recalculate its preferred size since the snapshot was taken and the hierarchy
+ * is the same.
+ */
+class LayoutSnapshot {
+    /**
+     * The number of entries saved for every component: bounds, preferred size and
+     * the size of the last layout for containers
+     */
+    static final int STATE_SIZE = 8;
+
+    private Component[] components;
+    private int[] state;
+    private int preferredSizeChanges;
+
+    private LayoutSnapshot(Component[] components, int[] state) {
+        this.components = components;
+        this.state = state;
+        preferredSizeChanges = Component.getPreferredSizeChanges();
+    }
+
+    private static void collect(Component cmp, Vector dest) {
+        dest.addElement(cmp);
+        if(cmp instanceof Container) {
+            Container cnt = (Container)cmp;
+            int count = cnt.getComponentCount();
+            for(int iter = 0 ; iter < count ; iter++) {
+                collect(cnt.getComponentAt(iter), dest);
+            }
+        }
+    }
+
+    /**
+     * Saves the current layout of the form
+     *
+     * @param f the form
+     * @return the snapshot or null if a layout is pending within the form
+     */
+    static LayoutSnapshot capture(Form f) {
+        Vector v = new Vector();
+        collect(f, v);
+        Component[] components = new Component[v.size()];
+        v.copyInto(components);
+        int[] state = new int[components.length * STATE_SIZE];
+        for(int iter = 0 ; iter < components.length ; iter++) {
+            if(!components[iter].saveLayoutState(state, iter * STATE_SIZE)) {
+                return null;
+            }
+        }
+        return new LayoutSnapshot(components, state);
+    }
+
+    /**
+     * Restores the layout of the form if the hierarchy didn't change since the
+     * snapshot was taken
+     *
+     * @param f the form
+     * @return true if the layout was restored, false if the form should be laid out
+     */
+    boolean restore(Form f) {
+        if(preferredSizeChanges != Component.getPreferredSizeChanges()) {
+            return false;
+        }
+        Vector v = new Vector();
+        collect(f, v);
+        if(v.size() != components.length) {
+            return false;
+        }
+        for(int iter = 0 ; iter < components.length ; iter++) {
+            if(v.elementAt(iter) != components[iter]) {
+                return false;
+            }
+        }
+        for(int iter = 0 ; iter < components.length ; iter++) {
+            components[iter].restoreBounds(state, iter * STATE_SIZE);
+        }
+        for(int iter = 0 ; iter < components.length ; iter++) {
+            components[iter].restoreLayoutState(state, iter * STATE_SIZE);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+import com.sun.lwuit.geom.Dimension;
+import com.sun.lwuit.layouts.BoxLayout;
+import com.sun.lwuit.list.ComponentProvider;
+import com.sun.lwuit.plaf.Style;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * A vertical container whose rows are created on demand by a {@link ComponentProvider}.
+ * Only the rows near the visible area exist as components, rows that scroll far away
+ * are removed and handed back to the provider for reuse. The heights of rows that
+ * weren't created yet are estimated from the rows measured so far so the scroll size
+ * of the container reflects all of its rows.
+ * <p>The container is scrollable by default but it can also be placed within another
+ * scrollable container. Focus traversal works on the rows that exist, since rows
+ * beyond the visible area are created ahead of time moving the focus scrolls into
+ * the following rows as usual.
+ * <p>Components shouldn't be added to this container directly, {@link #refresh()}
+ * should be invoked when the data behind the provider changes.
+ */
+public class LazyContainer extends Container {
+    /**
+     * The maximum number of removed rows kept for reuse
+     */
+    private static final int RECYCLE_LIMIT = 16;
+
+    private ComponentProvider provider;
+    private int size;
+
+    /**
+     * Heights of the rows including their margins, -1 for rows that weren't measured
+     */
+    private int[] heights;
+
+    /**
+     * The offset of every row from the top of the first row followed by the total
+     * height, rows that weren't measured are assumed to be of the estimated height
+     */
+    private int[] offsets;
+    private boolean offsetsValid;
+
+    private int estimatedRowHeight;
+    private int measuredTotal;
+    private int measuredCount;
+
+    /**
+     * The width the rows were measured for, the rows are measured again when the
+     * width changes
+     */
+    private int measuredWidth = -1;
+
+    /**
+     * Maps the indexes of the rows in the container to their components and back
+     */
+    private Hashtable rows = new Hashtable();
+    private Hashtable rowIndexes = new Hashtable();
+    private Vector recycled = new Vector();
+
+    /**
+     * Creates a container showing the rows of the given provider
+     *
+     * @param provider creates the components of the rows
+     */
+    public LazyContainer(ComponentProvider provider) {
+        super(new BoxLayout(BoxLayout.Y_AXIS));
+        setScrollableY(true);
+        this.provider = provider;
+        resetRows();
+    }
+
+    /**
+     * Returns the provider of the rows
+     *
+     * @return the provider of the rows
+     */
+    public ComponentProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Replaces the provider of the rows
+     *
+     * @param provider creates the components of the rows
+     */
+    public void setProvider(ComponentProvider provider) {
+        this.provider = provider;
+        recycled.removeAllElements();
+        refresh();
+    }
+
+    /**
+     * Discards all the rows and measurements and creates the rows again, this should
+     * be invoked when the data represented by the provider changes
+     */
+    public void refresh() {
+        Enumeration e = rows.keys();
+        while(e.hasMoreElements()) {
+            Integer key = (Integer)e.nextElement();
+            recycle(key, (Component)rows.get(key));
+        }
+        resetRows();
+        if(getComponentForm() != null) {
+            revalidate();
+        }
+    }
+
+    /**
+     * Sets the height assumed for rows that weren't measured before any row was
+     * measured, once rows are measured their average height is used
+     *
+     * @param estimatedRowHeight the height in pixels, 0 to derive it from the default font
+     */
+    public void setEstimatedRowHeight(int estimatedRowHeight) {
+        this.estimatedRowHeight = estimatedRowHeight;
+        offsetsValid = false;
+    }
+
+    /**
+     * Returns the height assumed for rows that weren't measured before any row was
+     * measured
+     *
+     * @return the height in pixels, 0 if it is derived from the default font
+     */
+    public int getEstimatedRowHeight() {
+        return estimatedRowHeight;
+    }
+
+    /**
+     * Returns the index of the row represented by the given component
+     *
+     * @param cmp a row component of this container
+     * @return the index of the row or -1 if the component isn't a row of this container
+     */
+    public int getRowIndex(Component cmp) {
+        Integer i = (Integer)rowIndexes.get(cmp);
+        if(i == null) {
+            return -1;
+        }
+        return i.intValue();
+    }
+
+    private void resetRows() {
+        size = provider.getSize();
+        heights = new int[size];
+        for(int iter = 0 ; iter < size ; iter++) {
+            heights[iter] = -1;
+        }
+        measuredTotal = 0;
+        measuredCount = 0;
+        measuredWidth = -1;
+        offsetsValid = false;
+        setShouldCalcPreferredSize(true);
+    }
+
+    private int getEstimate() {
+        if(measuredCount > 0) {
+            return measuredTotal / measuredCount;
+        }
+        if(estimatedRowHeight > 0) {
+            return estimatedRowHeight;
+        }
+        return Font.getDefaultFont().getHeight() * 2;
+    }
+
+    private void ensureOffsets() {
+        if(offsetsValid) {
+            return;
+        }
+        if(offsets == null || offsets.length != size + 1) {
+            offsets = new int[size + 1];
+        }
+        int estimate = getEstimate();
+        int y = 0;
+        for(int iter = 0 ; iter < size ; iter++) {
+            offsets[iter] = y;
+            int h = heights[iter];
+            if(h < 0) {
+                y += estimate;
+            } else {
+                y += h;
+            }
+        }
+        offsets[size] = y;
+        offsetsValid = true;
+    }
+
+    /**
+     * Returns the row at the given offset from the top of the first row
+     */
+    private int findRow(int y) {
+        int low = 0;
+        int high = size - 1;
+        while(low < high) {
+            int mid = (low + high + 1) >> 1;
+            if(offsets[mid] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the row component containing the focused component if there is one
+     */
+    private Component findFocusedRow() {
+        Form f = getComponentForm();
+        if(f == null) {
+            return null;
+        }
+        Component c = f.getFocused();
+        while(c != null && c.getParent() != this) {
+            c = c.getParent();
+        }
+        return c;
+    }
+
+    private void recycle(Integer key, Component cmp) {
+        rows.remove(key);
+        rowIndexes.remove(cmp);
+        removeComponentImpl(cmp, false);
+        if(recycled.size() < RECYCLE_LIMIT) {
+            recycled.addElement(cmp);
+        }
+    }
+
+    private void materialize(int index) {
+        Component old = null;
+        int count = recycled.size();
+        if(count > 0) {
+            old = (Component)recycled.elementAt(count - 1);
+            recycled.removeElementAt(count - 1);
+        }
+        Component cmp = provider.getComponentAt(index, old);
+        insertComponentAt(getComponentCount(), cmp, false);
+        Integer key = new Integer(index);
+        rows.put(key, cmp);
+        rowIndexes.put(cmp, key);
+        measure(index, cmp);
+    }
+
+    /**
+     * Measures the height of an existing row in the current width and updates the
+     * estimate accordingly
+     */
+    private void measure(int index, Component cmp) {
+        Style stl = cmp.getStyle();
+        boolean rtl = isRTL();
+        cmp.setWidth(measuredWidth - stl.getMargin(rtl, Component.LEFT) - stl.getMargin(rtl, Component.RIGHT));
+        int h = cmp.getPreferredSizeWithMargin().getHeight();
+        if(heights[index] < 0) {
+            measuredCount++;
+            measuredTotal += h;
+        } else {
+            measuredTotal += h - heights[index];
+        }
+        heights[index] = h;
+    }
+
+    /**
+     * Creates the rows near the visible area, removes the rows that are far from it
+     * and positions the rows
+     *
+     * @param force positions the rows even if no row was added or removed
+     */
+    private void updateRows(boolean force) {
+        Style s = getStyle();
+        boolean rtl = isRTL();
+        int width = getLayoutWidth() - getSideGap() - s.getPadding(false, Component.RIGHT) - s.getPadding(false, Component.LEFT);
+        if(width != measuredWidth) {
+            // rows might wrap differently in the new width
+            for(int iter = 0 ; iter < size ; iter++) {
+                heights[iter] = -1;
+            }
+            measuredTotal = 0;
+            measuredCount = 0;
+            measuredWidth = width;
+            offsetsValid = false;
+            force = true;
+            Enumeration e = rows.keys();
+            while(e.hasMoreElements()) {
+                Integer key = (Integer)e.nextElement();
+                Component cmp = (Component)rows.get(key);
+                // recalculated in place, invalidating through the parent would
+                // lay out the whole form again
+                cmp.shouldCalcPreferredSize = true;
+                measure(key.intValue(), cmp);
+            }
+        }
+        if(size == 0) {
+            return;
+        }
+        ensureOffsets();
+        int total = offsets[size];
+
+        // the area of this container that is visible on the screen taking into account
+        // the scrolling of this container and its parents
+        int top = 0;
+        int bottom = Display.getInstance().getDisplayHeight();
+        for(Component c = this ; c != null ; c = c.getParent()) {
+            int y = c.getAbsoluteY() + c.getScrollY();
+            top = Math.max(top, y);
+            bottom = Math.min(bottom, y + c.getHeight());
+        }
+        int origin = getAbsoluteY() + s.getPadding(false, Component.TOP);
+        top -= origin;
+        bottom -= origin;
+        int anchor = findRow(Math.max(0, top));
+        int anchorOffset = offsets[anchor];
+
+        // create half a screen of rows beyond the visible area on each side
+        int extra = Math.max(0, bottom - top) / 2;
+        top -= extra;
+        bottom += extra;
+        int first = findRow(top);
+        int last = findRow(bottom);
+
+        boolean changed = force;
+        Component focusedRow = findFocusedRow();
+        Enumeration e = rows.keys();
+        while(e.hasMoreElements()) {
+            Integer key = (Integer)e.nextElement();
+            int index = key.intValue();
+            if(index < first || index > last) {
+                Component cmp = (Component)rows.get(key);
+                if(cmp != focusedRow) {
+                    recycle(key, cmp);
+                    changed = true;
+                }
+            }
+        }
+
+        int y = offsets[first];
+        for(int iter = first ; iter < size && (iter <= last || y <= bottom) ; iter++) {
+            if(!rows.containsKey(new Integer(iter))) {
+                materialize(iter);
+                offsetsValid = false;
+                changed = true;
+            }
+            y += heights[iter];
+        }
+        if(!changed) {
+            return;
+        }
+        ensureOffsets();
+
+        if(offsets[size] != total) {
+            setShouldCalcPreferredSize(true);
+            shouldCalcScrollSize = true;
+            if(!scrollableY) {
+                // the parent needs to make room for the new height
+                invalidateLayout();
+                Container p = getParent();
+                if(p != null) {
+                    p.repaint();
+                }
+            }
+        }
+        if(scrollableY && offsets[anchor] != anchorOffset) {
+            // keep the visible rows in place when rows above them were measured
+            setScrollY(getScrollY() + offsets[anchor] - anchorOffset);
+        }
+
+        int x = s.getPadding(rtl, Component.LEFT);
+        if(rtl) {
+            x += getSideGap();
+        }
+        int padTop = s.getPadding(false, Component.TOP);
+        e = rows.keys();
+        while(e.hasMoreElements()) {
+            Integer key = (Integer)e.nextElement();
+            int index = key.intValue();
+            Component cmp = (Component)rows.get(key);
+            Style stl = cmp.getStyle();
+            int marginTop = stl.getMargin(false, Component.TOP);
+            int marginLeft = stl.getMargin(rtl, Component.LEFT);
+            cmp.setX(x + marginLeft);
+            cmp.setY(padTop + offsets[index] + marginTop);
+            cmp.setWidth(width - marginLeft - stl.getMargin(rtl, Component.RIGHT));
+            cmp.setHeight(heights[index] - marginTop - stl.getMargin(false, Component.BOTTOM));
+            if(cmp instanceof Container) {
+                layoutChildContainer((Container)cmp);
+            } else {
+                cmp.laidOut();
+            }
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    void doLayout() {
+        updateRows(true);
+        updateLayoutSize();
+        laidOut();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void paint(Graphics g) {
+        updateRows(false);
+        super.paint(g);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected Dimension calcPreferredSize() {
+        ensureOffsets();
+        Style s = getStyle();
+        int width = 0;
+        Enumeration e = rows.elements();
+        while(e.hasMoreElements()) {
+            width = Math.max(width, ((Component)e.nextElement()).getPreferredSizeWithMargin().getWidth());
+        }
+        return new Dimension(width + s.getPadding(false, Component.LEFT) + s.getPadding(false, Component.RIGHT),
+                offsets[size] + s.getPadding(false, Component.TOP) + s.getPadding(false, Component.BOTTOM));
+    }
+}
@@ -46,9 +46,18 @@ public class RGBImage extends Image {
     private int height;
     private int[] rgb;
     private boolean opaque;
+
+    // offset of the first pixel within rgb, non zero only when sharing a lent array
+    private int offset;
+
+    // indicates rgb is shared with another image and must be copied before modification
+    private boolean shared;
     
     /**
-     * Converts an image to an RGB image after which the original image can be GC'd
+     * Converts an image to an RGB image after which the original image can be GC'd.
+     * When the platform lends the pixels of the image they are shared rather than
+     * copied until getRGB() is invoked to modify them, hence changes made to a
+     * mutable source image before that point might be visible in this image.
      * 
      * @param img the image to convert to an RGB image
      */
@@ -56,7 +65,14 @@ public class RGBImage extends Image {
         super(null);
         width = img.getWidth();
         height = img.getHeight();
-        rgb = img.getRGBCached();
+        RGBView v = img.getRGBView();
+        if(v.getStride() == width) {
+            rgb = v.getData();
+            offset = v.getOffset();
+            shared = true;
+        } else {
+            rgb = v.toArray();
+        }
     }
 
     /**
@@ -79,13 +95,7 @@ public class RGBImage extends Image {
      */
     public Image subImage(int x, int y, int width, int height, boolean processAlpha)  {
         int[] arr = new int[width * height];
-        for(int iter = 0 ; iter < arr.length ; iter++) {
-            int destY = iter / width;
-            int destX = iter % width;
-            int offset = x + destX + ((y + destY) * this.width);
-            arr[iter] = rgb[offset];
-        }
-        
+        getRGB(arr, 0, x, y, width, height);
         return new RGBImage(arr, width, height);
     }
 
@@ -126,6 +136,8 @@ public class RGBImage extends Image {
         this.width = width;
         this.height = height;
         this.rgb = destinationArray;
+        offset = 0;
+        shared = false;
     }
 
     /**
@@ -139,10 +151,10 @@ public class RGBImage extends Image {
      * @inheritDoc
      */
     public Image modifyAlpha(byte alpha) {
-        int[] arr = new int[rgb.length];
-        System.arraycopy(rgb, 0, arr, 0, rgb.length);
+        int[] arr = new int[width * height];
+        getRGB(arr, 0, 0, 0, width, height);
         int alphaInt = (((int)alpha) << 24) & 0xff000000;
-        for(int iter = 0 ; iter < rgb.length ; iter++) {
+        for(int iter = 0 ; iter < arr.length ; iter++) {
             if((arr[iter] & 0xff000000) != 0) {
                 arr[iter] = (arr[iter] & 0xffffff) | alphaInt;
             }
@@ -160,14 +172,29 @@ public class RGBImage extends Image {
     
     /**
      * Returns a mutable array that can be used to change the appearance of the image
-     * arranged as AARRGGBB.
+     * arranged as AARRGGBB. If the pixels are shared with another image they are
+     * copied first.
      * 
      * @return ARGB int array
      */
     public int[] getRGB() {
+        if(shared) {
+            int[] arr = new int[width * height];
+            System.arraycopy(rgb, offset, arr, 0, arr.length);
+            rgb = arr;
+            offset = 0;
+            shared = false;
+        }
         return rgb;
     }
 
+    /**
+     * @inheritDoc
+     */
+    public RGBView getRGBView() {
+        return new RGBView(rgb, offset, width, width, height, true);
+    }
+
     /**
      * @inheritDoc
      */
@@ -177,12 +204,9 @@ public class RGBImage extends Image {
             int y,
             int width,
             int height){
-        int startPoint = y * this.width + x;
+        int startPoint = this.offset + y * this.width + x;
         for(int rows = 0 ; rows < height ; rows++) {
-            int currentRow = rows * width;
-            for(int columns = 0 ; columns < width ; columns++) {
-                rgbData[offset + currentRow + columns] = rgb[startPoint + columns];
-            }
+            System.arraycopy(rgb, startPoint, rgbData, offset + rows * width, width);
             startPoint += this.width;
         }
     }
@@ -191,7 +215,7 @@ public class RGBImage extends Image {
      * @inheritDoc
      */
     protected void drawImage(Graphics g, Object nativeGraphics, int x, int y) {
-       g.drawRGB(rgb, 0, x, y, width, height, !opaque);
+       g.drawRGB(rgb, offset, x, y, width, height, !opaque);
     }    
 
     /**
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+/**
+ * A read only window into the ARGB pixels of an image. When the platform keeps
+ * the pixels of an image in an int array the view lends that array directly, in
+ * which case the pixel at x, y is at offset + y * stride + x and the array must
+ * not be modified since it belongs to the image. Otherwise the view wraps a copy
+ * of the pixels.
+ * <p>Views are obtained using Image.getRGBView() and should not be held across
+ * modifications of a mutable image since the modifications might be visible
+ * through the view.
+ */
+public final class RGBView {
+    private final int[] data;
+    private final int offset;
+    private final int stride;
+    private final int width;
+    private final int height;
+    private final boolean borrowed;
+
+    /**
+     * Creates a view over the given pixel array, this is generally invoked by the
+     * LWUIT implementation
+     *
+     * @param data the pixel array in AARRGGBB format
+     * @param offset offset of the first pixel in the array
+     * @param stride the distance in the array between vertically adjacent pixels
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param borrowed true if the array belongs to the image and mustn't be modified
+     */
+    public RGBView(int[] data, int offset, int stride, int width, int height, boolean borrowed) {
+        this.data = data;
+        this.offset = offset;
+        this.stride = stride;
+        this.width = width;
+        this.height = height;
+        this.borrowed = borrowed;
+    }
+
+    /**
+     * The pixel array, notice that it might be larger than width * height and that it
+     * must not be modified when the view is borrowed
+     *
+     * @return the pixel array
+     */
+    public int[] getData() {
+        return data;
+    }
+
+    /**
+     * The offset of the top left pixel within the array
+     *
+     * @return offset in the data array
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * The distance in the array between vertically adjacent pixels
+     *
+     * @return the scanline stride
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * The width of the image
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * The height of the image
+     *
+     * @return the height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Indicates that the array belongs to the image or to a cache and must not be modified
+     *
+     * @return true if the data array is shared
+     */
+    public boolean isBorrowed() {
+        return borrowed;
+    }
+
+    /**
+     * Indicates whether the array holds exactly the pixels of the image row after row,
+     * with no offset or padding, which is the layout expected by most of the API
+     *
+     * @return true if the data array can be used as a width * height ARGB array
+     */
+    public boolean isPacked() {
+        return offset == 0 && stride == width && data.length == width * height;
+    }
+
+    /**
+     * Returns the ARGB value of the given pixel
+     *
+     * @param x the x coordinate within the image
+     * @param y the y coordinate within the image
+     * @return the pixel in AARRGGBB format
+     */
+    public int getPixel(int x, int y) {
+        return data[offset + y * stride + x];
+    }
+
+    /**
+     * Copies the pixels into a new packed width * height array that can be modified
+     *
+     * @return a new ARGB array
+     */
+    public int[] toArray() {
+        int[] arr = new int[width * height];
+        int srcOffset = offset;
+        int destOffset = 0;
+        for(int row = 0 ; row < height ; row++) {
+            System.arraycopy(data, srcOffset, arr, destOffset, width);
+            srcOffset += stride;
+            destOffset += width;
+        }
+        return arr;
+    }
+
+    /**
+     * Returns a packed width * height array of the pixels, this is the lent array when
+     * it is already packed and a copy otherwise. The result must be treated as read only.
+     *
+     * @return ARGB array that must not be modified
+     */
+    public int[] toPackedArray() {
+        if(isPacked()) {
+            return data;
+        }
+        return toArray();
+    }
+}
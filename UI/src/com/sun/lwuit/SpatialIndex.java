@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit;
+
+/**
+ * A grid of buckets over the bounds of the children of a container allowing
+ * the children at a point to be found without testing every child. Every
+ * bucket lists the children intersecting it in descending index order which
+ * is the order in which the container tests its children.
+ */
+class SpatialIndex {
+    private static final int MAX_CELLS_PER_AXIS = 32;
+
+    /**
+     * Set to false when the children or their bounds change, the index is built
+     * again on the next query
+     */
+    boolean valid;
+
+    private int x;
+    private int y;
+    private int cellWidth;
+    private int cellHeight;
+    private int columns;
+    private int rows;
+
+    /**
+     * The children of bucket n are items[cellStart[n]] to items[cellStart[n + 1] - 1]
+     */
+    int[] cellStart;
+    int[] items;
+
+    /**
+     * Builds the index from the current bounds of the children of the container
+     *
+     * @param cnt the container
+     */
+    void build(Container cnt) {
+        valid = true;
+        columns = 0;
+        rows = 0;
+        int count = cnt.getComponentCount();
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for(int iter = 0 ; iter < count ; iter++) {
+            Component cmp = cnt.getComponentAt(iter);
+            int w = cmp.getWidth();
+            int h = cmp.getHeight();
+            if(w <= 0 || h <= 0) {
+                // can't contain any point
+                continue;
+            }
+            minX = Math.min(minX, cmp.getX());
+            minY = Math.min(minY, cmp.getY());
+            maxX = Math.max(maxX, cmp.getX() + w);
+            maxY = Math.max(maxY, cmp.getY() + h);
+        }
+        if(minX == Integer.MAX_VALUE) {
+            return;
+        }
+        int dim = 1;
+        while(dim < MAX_CELLS_PER_AXIS && (dim + 1) * (dim + 1) <= count) {
+            dim++;
+        }
+        x = minX;
+        y = minY;
+        columns = dim;
+        rows = dim;
+        cellWidth = Math.max(1, (maxX - minX + dim - 1) / dim);
+        cellHeight = Math.max(1, (maxY - minY + dim - 1) / dim);
+
+        // first pass counts the children of every cell, second pass fills them
+        int cells = columns * rows;
+        if(cellStart == null || cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        } else {
+            for(int iter = 0 ; iter <= cells ; iter++) {
+                cellStart[iter] = 0;
+            }
+        }
+        int total = 0;
+        for(int iter = 0 ; iter < count ; iter++) {
+            Component cmp = cnt.getComponentAt(iter);
+            if(cmp.getWidth() <= 0 || cmp.getHeight() <= 0) {
+                continue;
+            }
+            int firstColumn = (cmp.getX() - x) / cellWidth;
+            int lastColumn = Math.min(columns - 1, (cmp.getX() + cmp.getWidth() - 1 - x) / cellWidth);
+            int firstRow = (cmp.getY() - y) / cellHeight;
+            int lastRow = Math.min(rows - 1, (cmp.getY() + cmp.getHeight() - 1 - y) / cellHeight);
+            for(int row = firstRow ; row <= lastRow ; row++) {
+                for(int column = firstColumn ; column <= lastColumn ; column++) {
+                    cellStart[row * columns + column + 1]++;
+                    total++;
+                }
+            }
+        }
+        for(int iter = 1 ; iter <= cells ; iter++) {
+            cellStart[iter] += cellStart[iter - 1];
+        }
+        if(items == null || items.length < total) {
+            items = new int[total];
+        }
+        int[] fill = new int[cells];
+        for(int iter = count - 1 ; iter >= 0 ; iter--) {
+            Component cmp = cnt.getComponentAt(iter);
+            if(cmp.getWidth() <= 0 || cmp.getHeight() <= 0) {
+                continue;
+            }
+            int firstColumn = (cmp.getX() - x) / cellWidth;
+            int lastColumn = Math.min(columns - 1, (cmp.getX() + cmp.getWidth() - 1 - x) / cellWidth);
+            int firstRow = (cmp.getY() - y) / cellHeight;
+            int lastRow = Math.min(rows - 1, (cmp.getY() + cmp.getHeight() - 1 - y) / cellHeight);
+            for(int row = firstRow ; row <= lastRow ; row++) {
+                for(int column = firstColumn ; column <= lastColumn ; column++) {
+                    int cell = row * columns + column;
+                    items[cellStart[cell] + fill[cell]] = iter;
+                    fill[cell]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the bucket containing the given point
+     *
+     * @param px x relative to the container
+     * @param py y relative to the container
+     * @return the bucket or -1 if no child contains the point
+     */
+    int getCell(int px, int py) {
+        if(columns == 0 || px < x || py < y) {
+            return -1;
+        }
+        int column = (px - x) / cellWidth;
+        int row = (py - y) / cellHeight;
+        if(column >= columns || row >= rows) {
+            return -1;
+        }
+        return row * columns + column;
+    }
+}
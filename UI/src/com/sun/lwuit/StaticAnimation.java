@@ -282,6 +282,7 @@ public class StaticAnimation extends IndexedImage implements Animation {
         if(lineCache == null || lineCache.length < width) {
             lineCache = new int[width];
         }
+        invalidateLineCache();
         
         // for performance we can calculate the visible drawing area so we don't have to
         // calculate the whole array
@@ -178,9 +178,35 @@ public class TextArea extends Component {
     
     // problematic  maxSize = 20; //maximum size (number of characters) that can be stored in this TextField.
     
-    private Vector rowStrings;
+    /**
+     * Row layout of the text, rowBuffer holds the text as prepared for rendering and
+     * each row is the range between its start and end offsets within it. Row strings
+     * are only created on demand and kept until the row is wrapped again.
+     */
+    private char[] rowBuffer;
+    private int[] rowStarts = new int[0];
+    private int[] rowEnds = new int[0];
+    private String[] rowTexts = new String[0];
+    private int rowCount;
+    private boolean rowsValid;
+
+    /**
+     * In large text mode row strings are never kept, rows only exist as offsets
+     * and the text of a row is created when it is painted
+     */
+    private boolean largeText;
+    private int rowBreakNext;
     private int widthForRowCalculations = -1;
 
+    /**
+     * The parameters used when wrapping the current rows, if any of these change
+     * the text is wrapped again from the first row
+     */
+    private int rowWrapWidth = -1;
+    private Font rowWrapFont;
+    private boolean rowWrapByString;
+    private boolean rowWrapLarge;
+
     private int rowsGap = 2;
 
     private boolean triggerClose;
@@ -206,8 +232,6 @@ public class TextArea extends Component {
      */
     private boolean singleLineTextArea;
 
-    private int currentRowWidth;
-    
     private Label hintLabel;
 
     /**
@@ -353,7 +377,7 @@ public class TextArea extends Component {
      */
     public void setWidth(int width) {
         super.setWidth(width);
-        getRowStrings();
+        ensureRows();
     }
 
     
@@ -370,8 +394,8 @@ public class TextArea extends Component {
         }
         
         synchronized(this) {
-            //zero the vector inorder to initialize it on the next paint
-            rowStrings=null; 
+            //mark the rows as stale, they are wrapped again on the next paint
+            rowsValid = false;
         }
         repaint();
     }
@@ -627,16 +651,15 @@ public class TextArea extends Component {
     }
     
     void initComponentImpl() {
-        getRowStrings();
+        ensureRows();
         super.initComponentImpl();
     }
     
-    private Vector getRowStrings() {
-        if(rowStrings == null || widthForRowCalculations != getWidth() - getUnselectedStyle().getPadding(false, RIGHT) - getUnselectedStyle().getPadding(false, LEFT)){
+    private void ensureRows() {
+        if(!rowsValid || widthForRowCalculations != getWidth() - getUnselectedStyle().getPadding(false, RIGHT) - getUnselectedStyle().getPadding(false, LEFT)){
             initRowString();
             setShouldCalcPreferredSize(true);
         }
-        return rowStrings;
     }
     
     
@@ -646,10 +669,8 @@ public class TextArea extends Component {
      * @return the number of text lines in the TextArea
      */
     public int getLines(){
-        int retVal;
-        Vector v = getRowStrings();
-        retVal = v.size();
-        return retVal;
+        ensureRows();
+        return rowCount;
     }
     
     /**
@@ -658,16 +679,23 @@ public class TextArea extends Component {
      * @param line the line number in the text box
      * @return the text of the line
      */
-    public String getTextAt(int line){
-        Vector rowsV = getRowStrings();
-        int size = rowsV.size();
-        if(size == 0){
+    public synchronized String getTextAt(int line){
+        ensureRows();
+        if(rowCount == 0){
             return "";
         }
-        if(line >= size){
-            return (String)rowsV.elementAt(size-1);        
-        }            
-        return (String)rowsV.elementAt(line);
+        if(line >= rowCount){
+            line = rowCount - 1;
+        }
+        if(rowTexts == null) {
+            return new String(rowBuffer, rowStarts[line], rowEnds[line] - rowStarts[line]);
+        }
+        String s = rowTexts[line];
+        if(s == null) {
+            s = new String(rowBuffer, rowStarts[line], rowEnds[line] - rowStarts[line]);
+            rowTexts[line] = s;
+        }
+        return s;
     }
     
     private int indexOf(char[] t, char c, int offset, int length) {
@@ -692,36 +720,143 @@ public class TextArea extends Component {
         return text.toCharArray();
     }
 
-    private int updateRowWidth(char c, Font font) {
-        currentRowWidth += font.charWidth(c);
-        return currentRowWidth;
+    private void setSingleRow(String t) {
+        rowBuffer = null;
+        rowWrapWidth = -1;
+        rowWrapFont = null;
+        rowStarts = new int[1];
+        rowEnds = new int[] {t.length()};
+        rowTexts = new String[] {t};
+        rowCount = 1;
+    }
+
+    /**
+     * Breaks a single row starting at the given offset, returns the end offset of
+     * the row text and places the offset of the following row in rowBreakNext.
+     * The result depends only on the text from the given offset onward which
+     * allows the rows following an edit to be reused.
+     */
+    private int wrapRow(char[] text, int from, int textLength, int textAreaWidth, Font font) {
+        int i;
+        int spaceIndex = -1;
+        int maxLength = from;
+
+        // search for "space" character at close as possible to the end of the row
+        if(useStringWidth) {
+            // measure the row once, characters past fitEnd exceed the available width
+            int fitEnd = from + font.charsFit(text, from, textLength - from, textAreaWidth - 1);
+            for(i = from ; i < fitEnd ; i++) {
+                char c = text[i];
+                if(c == ' ' || c == '\n') {
+                    spaceIndex = i;
+                    // newline has been found. We can end the loop here as the line cannot grow more
+                    if (c == '\n') {
+                        break;
+                    }
+                }
+                maxLength++;
+            }
+        } else {
+            int rowWidth = 0;
+            for(i = from ; i < textLength ; i++) {
+                char c = text[i];
+                rowWidth += font.charWidth(c);
+                if(rowWidth >= textAreaWidth) {
+                    break;
+                }
+                if(c == ' ' || c == '\n') {
+                    spaceIndex = i;
+                    // newline has been found. We can end the loop here as the line cannot grow more
+                    if (c == '\n') {
+                        break;
+                    }
+                }
+                maxLength++;
+            }
+        }
+
+        // if we got to the end of the text use the entire row,
+        // also if space is next character (in the next row) we can cut the line
+        if(i == textLength || text[i] == ' ' || text[i] == '\n') {
+            spaceIndex = i;
+        }
+
+        if(spaceIndex != -1) {
+            // make sure that if we have a newline character before the end of the line we should
+            // break there instead
+            int newLine = indexOf(text, '\n', from, spaceIndex - from);
+            if(newLine > -1 && newLine < spaceIndex) {
+                spaceIndex = newLine;
+            }
+            rowBreakNext = spaceIndex + 1;
+            return spaceIndex;
+        }
+
+        // there is no space in the row, cut the word but always make progress even
+        // if a single character doesn't fit
+        if(maxLength <= from) {
+            maxLength = from + 1;
+        }
+        rowBreakNext = maxLength;
+        return maxLength;
+    }
+
+    private static int[] growRows(int[] rows, int count, int capacity) {
+        int[] a = new int[capacity];
+        System.arraycopy(rows, 0, a, 0, count);
+        return a;
+    }
+
+    private static String[] growRowTexts(String[] rows, int count, int capacity) {
+        if(rows == null) {
+            return null;
+        }
+        String[] a = new String[capacity];
+        System.arraycopy(rows, 0, a, 0, count);
+        return a;
     }
 
-    private boolean fastCharWidthCheck(char[] chrs, int off, int length, int width, int charWidth, Font f) {
-        if(length * charWidth < width) {
-            return true;
+    /**
+     * Returns the last row in the given range whose start offset is smaller or equal
+     * to the given offset
+     */
+    private static int findRow(int[] starts, int count, int offset) {
+        int low = 0;
+        int high = count - 1;
+        while(low < high) {
+            int mid = (low + high + 1) >> 1;
+            if(starts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
         }
-        length = Math.min(chrs.length, length);
-        return f.charsWidth(chrs, off, length) < width;
+        return low;
     }
 
     private synchronized void initRowString() {
         Style style = getUnselectedStyle();
-        rowStrings= new Vector();
         widthForRowCalculations = getWidth() - style.getPadding(false, RIGHT) - style.getPadding(false, LEFT);
+        rowsValid = true;
         // single line text area is essentially a text field, we call the method
         // to allow subclasses to override it
         if ((isSingleLineTextArea()) || (widthForRowCalculations<=0)) {
-            rowStrings.addElement(getText());
+            setSingleRow(getText());
             return;
         }
         if(text == null || text.equals("")){
+            rowBuffer = null;
+            rowWrapWidth = -1;
+            rowCount = 0;
             return;
         }
         char[] text = preprocess(getText());
-        int rows = this.rows;
-        if(growByContent) {
-            rows = Math.max(rows, getLines());
+        String unsupported = getUnsupportedChars();
+        int textLength = text.length;
+        for(int iter = 0 ; iter < textLength ; iter++) {
+            if(unsupported.indexOf(text[iter]) > -1) {
+                text[iter] = ' ';
+            }
         }
         
         Font font = style.getFont();
@@ -737,21 +872,8 @@ public class TextArea extends Component {
         style = getStyle();
         int tPadding = style.getPadding(false, RIGHT) + style.getPadding(false, LEFT);
         int textAreaWidth = getWidth() - tPadding;
-        /*if(textAreaWidth <= 0) {
-            if(columns < 1) {
-                textAreaWidth = Math.min(Display.getInstance().getDisplayWidth() - tPadding, getText().length()) * charWidth;
-            } else {
-                textAreaWidth = Math.min(Display.getInstance().getDisplayWidth() - tPadding, columns) * charWidth;
-            }
-        }*/
         
         int minCharactersInRow = Math.max(1, textAreaWidth / charWidth);
-        int rowIndex=0;
-        int from=0;
-        int to=from+minCharactersInRow;
-        int textLength=text.length;
-        String rowText = null;
-        int i,spaceIndex;
         
         // if there is any possibility of a scrollbar we need to reduce the textArea
         // width to accommodate it
@@ -759,138 +881,119 @@ public class TextArea extends Component {
             textAreaWidth -= UIManager.getInstance().getLookAndFeel().getVerticalScrollWidth();
             textAreaWidth -= charWidth/2;
         }
-        String unsupported = getUnsupportedChars();
-        
+
         /*
-        iteration over the string using indexes, from - the beginning of the row , to - end of a row
-        for each row we will try to search for a "space" character at the end of the row ( row is text area available width)
-        indorder to improve the efficiency we do not search an entire row but we start from minCharactersInRow which indicates
-        what is the minimum amount of characters that can feet in the text area width.
-        if we dont find we will go backwards and search for the first space available,
-        if there is no space in the entire row we will cut the line inorder to fit in.
+        rows are wrapped one at a time, each row is as long as possible while still fitting
+        within the available width and breaks on the last space or newline within it. If there
+        is no space in the entire row we cut the line in order to fit it in.
+        When only a part of the text changed and the wrapping parameters are the same the rows
+        before the edit are kept and the rows after it are reused as soon as a new row starts
+        at the same position within the unchanged tail of the text.
          */
-
-        //Don't rely on the fact that short text has no newline character. we always have to parse the text.
-        to = Math.max( Math.min(textLength-1,to), 0 );
-        while(to<textLength) {
-            if(to>textLength){
-                to=textLength;
+        char[] old = rowBuffer;
+        int oldCount = rowCount;
+        int startRow = 0;
+        int resyncOffset = textLength + 1;
+        int delta = 0;
+        if(old != null && oldCount > 0 && textAreaWidth == rowWrapWidth && font == rowWrapFont && useStringWidth == rowWrapByString && largeText == rowWrapLarge) {
+            int oldLength = old.length;
+            int min = Math.min(oldLength, textLength);
+            int prefix = 0;
+            while(prefix < min && old[prefix] == text[prefix]) {
+                prefix++;
             }
-
-            spaceIndex=-1;
-            rowText="";
-            int maxLength = to;
-
-            if(useStringWidth) {
-                // fix for an infinite loop issue: http://forums.java.net/jive/thread.jspa?messageID=482802
-                //currentRowWidth = 0;
-                String currentRow = "";
-                
-                // search for "space" character at close as possible to the end of the row
-                for( i=to; i < textLength && fastCharWidthCheck(text, from, i - from + 1, textAreaWidth, charWidth, font) ; i++){
-                    char c = text[i];
-                    /*if(updateRowWidth(c, font) >= textAreaWidth) {
-                        break;
-                    }*/
-                    currentRow+=c;
-                    if(font.stringWidth(currentRow) >= textAreaWidth) {
-                        break;
-                    }
-                    if(unsupported.indexOf(c) > -1) {
-                        text[i] = ' ';
-                        c = ' ';
-                    }
-                    if(c == ' ' || c == '\n') {
-                        spaceIndex=i;
-                        // newline has been found. We can end the loop here as the line cannot grow more
-                        if (c == '\n')
-                            break;
-                    }
-                    maxLength++;
-                }
-            } else {
-                currentRowWidth = 0;
-                if(to != from) {
-                    currentRowWidth = font.charsWidth(text, from, to - from);
-                }
-
-                // search for "space" character at close as possible to the end of the row
-                for( i=to; i < textLength ; i++){
-                    char c = text[i];
-                    if(updateRowWidth(c, font) >= textAreaWidth) {
-                        break;
-                    }
-                    if(unsupported.indexOf(c) > -1) {
-                        text[i] = ' ';
-                        c = ' ';
-                    }
-                    if(c == ' ' || c == '\n') {
-                        spaceIndex=i;
-                        // newline has been found. We can end the loop here as the line cannot grow more
-                        if (c == '\n')
-                            break;
-                    }
-                    maxLength++;
-                }
+            if(prefix == oldLength && oldLength == textLength) {
+                rowBuffer = text;
+                return;
             }
-            
-            // if we got to the end of the text use the entire row,
-            // also if space is next character (in the next row) we can cut the line
-            if(i == textLength || text[i] == ' ' || text[i] == '\n') {
-                spaceIndex=i;
+            int suffix = 0;
+            while(suffix < min - prefix && old[oldLength - 1 - suffix] == text[textLength - 1 - suffix]) {
+                suffix++;
             }
 
-            // if we found space in the limit width of the row (searched only from minCharactersInRow)
-            if(spaceIndex!=-1){
-                // make sure that if we have a newline character before the end of the line we should
-                // break there instead
-                int newLine = indexOf(text, '\n', from, spaceIndex - from);
-                if(newLine > -1 && newLine < spaceIndex) {
-                    spaceIndex = newLine;
-                }
+            // measuring a row can look as far as the start of the row following the next one,
+            // so the row before the one containing the edit must be wrapped again as well
+            startRow = Math.max(0, findRow(rowStarts, oldCount, prefix - 1) - 1);
+            resyncOffset = textLength - suffix;
+            delta = textLength - oldLength;
+        }
 
-                rowText = new String(text, from, spaceIndex - from);
-                from=spaceIndex+1;
-
-            } // if there is no space from minCharactersInRow to limit need to search backwards
-            else{
-                for( i=to; spaceIndex==-1 && i>=from ; i--){
-                    char chr = text[i];
-                    if(chr == ' ' || chr == '\n' || chr == '\t') {
-                        spaceIndex=i;
-                        
-                        // don't forget to search for line breaks in the
-                        // remaining part. otherwise we overlook possible
-                        // line breaks!
-                        int newLine = indexOf(text, '\n', from, i - from);
-                        if(newLine > -1 && newLine < spaceIndex) {
-                           spaceIndex = newLine;
-                        }
-                        rowText = new String(text, from, spaceIndex - from);
-                        from=spaceIndex+1;
-                    }
+        int[] oldStarts = rowStarts;
+        int[] oldEnds = rowEnds;
+        String[] oldTexts = rowTexts;
+        int capacity = Math.max(16, oldCount + 8);
+        int[] starts = new int[capacity];
+        int[] ends = new int[capacity];
+        String[] texts = null;
+        if(!largeText) {
+            texts = new String[capacity];
+        }
+        int count = startRow;
+        int from = 0;
+        if(startRow > 0) {
+            System.arraycopy(oldStarts, 0, starts, 0, startRow);
+            System.arraycopy(oldEnds, 0, ends, 0, startRow);
+            if(texts != null) {
+                System.arraycopy(oldTexts, 0, texts, 0, startRow);
+            }
+            from = oldStarts[startRow];
+        }
 
-                }
-                if(spaceIndex==-1) {
-                    // from = to + 1;
-                    if(maxLength <= 0) {
-                        maxLength = 1;
+        boolean resynced = false;
+        while(from < textLength) {
+            if(from >= resyncOffset) {
+                int m = findRow(oldStarts, oldCount, from - delta);
+                if(m >= startRow && oldStarts[m] == from - delta) {
+                    int remaining = oldCount - m;
+                    if(count + remaining > capacity) {
+                        capacity = count + remaining;
+                        starts = growRows(starts, count, capacity);
+                        ends = growRows(ends, count, capacity);
+                        texts = growRowTexts(texts, count, capacity);
                     }
-                    spaceIndex = maxLength;
-                    rowText = new String(text, from, spaceIndex - from);
-                    from = spaceIndex;
+                    for(int iter = 0 ; iter < remaining ; iter++) {
+                        starts[count + iter] = oldStarts[m + iter] + delta;
+                        ends[count + iter] = oldEnds[m + iter] + delta;
+                    }
+                    if(texts != null) {
+                        System.arraycopy(oldTexts, m, texts, count, remaining);
+                    }
+                    count += remaining;
+                    resynced = true;
+                    break;
                 }
             }
-
-            rowStrings.addElement(rowText);
-            //adding minCharactersInRow doesn't work if what is left is less
-            //then minCharactersInRow
-            to=from;//+minCharactersInRow;
-            rowIndex++;
+            if(count == capacity) {
+                capacity *= 2;
+                starts = growRows(starts, count, capacity);
+                ends = growRows(ends, count, capacity);
+                texts = growRowTexts(texts, count, capacity);
+            }
+            starts[count] = from;
+            ends[count] = wrapRow(text, from, textLength, textAreaWidth, font);
+            count++;
+            from = rowBreakNext;
         }
-        if(text[text.length -1 ] == '\n'){
-            rowStrings.addElement("");
+        if(!resynced && text[textLength - 1] == '\n'){
+            if(count == capacity) {
+                capacity++;
+                starts = growRows(starts, count, capacity);
+                ends = growRows(ends, count, capacity);
+                texts = growRowTexts(texts, count, capacity);
+            }
+            starts[count] = textLength;
+            ends[count] = textLength;
+            count++;
         }
+        rowBuffer = text;
+        rowStarts = starts;
+        rowEnds = ends;
+        rowTexts = texts;
+        rowCount = count;
+        rowWrapWidth = textAreaWidth;
+        rowWrapFont = font;
+        rowWrapByString = useStringWidth;
+        rowWrapLarge = largeText;
     }
     
     /**
@@ -1020,6 +1123,32 @@ public class TextArea extends Component {
     public void setGrowByContent(boolean growByContent) {
         this.growByContent = growByContent;
     }
+
+    /**
+     * Indicates whether the text area is in large text mode where rows are kept
+     * only as offsets into the text
+     *
+     * @return true if large text mode is on
+     */
+    public boolean isLargeText() {
+        return largeText;
+    }
+
+    /**
+     * Large text mode is intended for displaying very large read only content such
+     * as logs. In this mode the text area keeps a single copy of the text and an
+     * offset pair for every row, the text of a row is only created when the row is
+     * painted and rows that aren't visible are never painted.
+     *
+     * @param largeText true to keep rows only as offsets into the text
+     */
+    public synchronized void setLargeText(boolean largeText) {
+        if(this.largeText != largeText) {
+            this.largeText = largeText;
+            rowsValid = false;
+            repaint();
+        }
+    }
     
     /**
      * Indicates whether a high value for default maxSize will be reduced to a lower
@@ -349,6 +349,14 @@ public class HTMLComponent extends Container implements ActionListener,AsyncDocu
     private String anchor; // The current page anchor
     private boolean linkVisited; // True if the current link address was visited
 
+    // Find
+    private HTMLTextIndex textIndex = new HTMLTextIndex(); // The displayed text of the page with offsets back to the text elements and labels
+    private int foundOffset = -1; // The offset of the last match in the text index
+    private Vector highlighted; // The labels currently highlighted as the last match
+    private int[] highlightedBgColors; // The original background colors of the highlighted labels
+    private int[] highlightedBgTransparency; // The original background transparency of the highlighted labels
+    private int highlightColor = 0xffff00; // The background color used to highlight matches
+
     // Forms
     private HTMLForm curForm; // The current HTMLForm to which input fields should be added
     private TextArea curTextArea; // The current TextArea
@@ -1089,6 +1097,97 @@ public class HTMLComponent extends Container implements ActionListener,AsyncDocu
         return document;
     }
 
+    /**
+     * Finds the next occurrence of the given text in the displayed page. The search
+     * starts after the previous match and wraps around to the top of the page, the
+     * labels displaying the match are highlighted and scrolled into view.
+     * The search uses an index of the page text built while the page is rendered so
+     * it doesn't walk the DOM.
+     *
+     * @param text The text to search for
+     * @param caseSensitive true to match the case of the text, false otherwise
+     * @return true if the text was found, false otherwise
+     */
+    public boolean findNext(String text,boolean caseSensitive) {
+        clearHighlight();
+        if ((text==null) || (text.length()==0)) {
+            foundOffset=-1;
+            return false;
+        }
+        int offset=textIndex.find(text, caseSensitive, foundOffset+1);
+        if ((offset==-1) && (foundOffset!=-1)) {
+            offset=textIndex.find(text, caseSensitive, 0);
+        }
+        foundOffset=offset;
+        if (offset==-1) {
+            return false;
+        }
+        highlighted=textIndex.getComponents(offset, offset+text.length());
+        int size=highlighted.size();
+        highlightedBgColors=new int[size];
+        highlightedBgTransparency=new int[size];
+        for(int i=0;i<size;i++) {
+            Style style=((Component)highlighted.elementAt(i)).getUnselectedStyle();
+            highlightedBgColors[i]=style.getBgColor();
+            highlightedBgTransparency[i]=style.getBgTransparency() & 0xff;
+            style.setBgColor(highlightColor);
+            style.setBgTransparency(255);
+        }
+        if (size>0) {
+            Component cmp=(Component)highlighted.elementAt(0);
+            scrollRectToVisible(cmp.getX(), cmp.getY(), getWidth(), cmp.getHeight(), cmp);
+        }
+        repaint();
+        return true;
+    }
+
+    /**
+     * Removes the highlight of the last match found by findNext
+     */
+    public void clearHighlight() {
+        if (highlighted!=null) {
+            for(int i=0;i<highlighted.size();i++) {
+                Style style=((Component)highlighted.elementAt(i)).getUnselectedStyle();
+                style.setBgColor(highlightedBgColors[i]);
+                style.setBgTransparency(highlightedBgTransparency[i]);
+            }
+            highlighted=null;
+            highlightedBgColors=null;
+            highlightedBgTransparency=null;
+            repaint();
+        }
+    }
+
+    /**
+     * Returns the text element containing the start of the last match found by findNext
+     *
+     * @return the text element of the last match, or null if there is no match
+     */
+    public HTMLElement getFoundElement() {
+        if (foundOffset==-1) {
+            return null;
+        }
+        return textIndex.getElementAt(foundOffset);
+    }
+
+    /**
+     * Sets the background color used to highlight the matches found by findNext
+     *
+     * @param color The highlight color
+     */
+    public void setHighlightColor(int color) {
+        highlightColor=color;
+    }
+
+    /**
+     * Returns the background color used to highlight the matches found by findNext
+     *
+     * @return The highlight color
+     */
+    public int getHighlightColor() {
+        return highlightColor;
+    }
+
     /**
      * Refreshes the current DOM so it any changes done after loading will be rendered.
      */
@@ -1536,6 +1635,10 @@ public class HTMLComponent extends Container implements ActionListener,AsyncDocu
         marqueeMotion=null;
         anchors=new Hashtable();
         anchor=null;
+
+        clearHighlight();
+        textIndex=new HTMLTextIndex();
+        foundOffset=-1;
         
         accesskey='\0';
         for (Enumeration e=accessKeys.keys();e.hasMoreElements();) {
@@ -2871,6 +2974,7 @@ public class HTMLComponent extends Container implements ActionListener,AsyncDocu
                       if (loadCSS) {
                           child.setAssociatedComponents(comps);
                       }
+                      textIndex.add(child, text, loadCSS?null:comps); // With CSS the labels may be replaced later, so they are taken from the element when needed
                       //textTime+=(System.currentTimeMillis()-startTextTime); //debug code for performance measurement
                     }
                     break;
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.html;
+
+import com.sun.lwuit.Label;
+import java.util.Vector;
+
+/**
+ * A flat index of the text displayed by an HTMLComponent. The text of all text
+ * elements is concatenated in document order with whitespace collapsed as it is
+ * rendered, and an offset table maps every position back to its text element
+ * and the labels that display it. This allows searching a page without walking
+ * the DOM.
+ */
+class HTMLTextIndex {
+    private StringBuffer buffer = new StringBuffer();
+    private String text;
+    private String lowerCaseText;
+
+    private int[] starts = new int[32];
+    private HTMLElement[] elements = new HTMLElement[32];
+    private Vector[] components = new Vector[32];
+    private int count;
+
+    /**
+     * Adds the text of a text element to the index
+     *
+     * @param element the text element
+     * @param str the text of the element
+     * @param comps the labels displaying the text or null if they should be
+     * retrieved from the element when needed
+     */
+    void add(HTMLElement element, String str, Vector comps) {
+        if(str == null || str.length() == 0) {
+            return;
+        }
+        if(count == starts.length) {
+            int[] s = new int[count * 2];
+            HTMLElement[] e = new HTMLElement[count * 2];
+            Vector[] c = new Vector[count * 2];
+            System.arraycopy(starts, 0, s, 0, count);
+            System.arraycopy(elements, 0, e, 0, count);
+            System.arraycopy(components, 0, c, 0, count);
+            starts = s;
+            elements = e;
+            components = c;
+        }
+        boolean space = buffer.length() == 0 || buffer.charAt(buffer.length() - 1) == ' ';
+        int len = str.length();
+        int iter = 0;
+        if(space) {
+            while(iter < len && isWhiteSpace(str.charAt(iter))) {
+                iter++;
+            }
+        }
+        starts[count] = buffer.length();
+        elements[count] = element;
+        components[count] = comps;
+        count++;
+        for( ; iter < len ; iter++) {
+            char c = str.charAt(iter);
+            if(isWhiteSpace(c)) {
+                if(!space) {
+                    buffer.append(' ');
+                    space = true;
+                }
+            } else {
+                buffer.append(c);
+                space = false;
+            }
+        }
+        text = null;
+        lowerCaseText = null;
+    }
+
+    private static boolean isWhiteSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private String getText() {
+        if(text == null) {
+            text = buffer.toString();
+        }
+        return text;
+    }
+
+    /**
+     * Returns the length of the indexed text
+     *
+     * @return the number of characters in the index
+     */
+    int length() {
+        return buffer.length();
+    }
+
+    /**
+     * Finds the given string within the indexed text
+     *
+     * @param str the string to search for
+     * @param caseSensitive true for a case sensitive search
+     * @param from the offset from which to search
+     * @return the offset of the match or -1 if not found
+     */
+    int find(String str, boolean caseSensitive, int from) {
+        if(caseSensitive) {
+            return getText().indexOf(str, from);
+        }
+        if(lowerCaseText == null) {
+            lowerCaseText = getText().toLowerCase();
+        }
+        return lowerCaseText.indexOf(str.toLowerCase(), from);
+    }
+
+    /**
+     * Returns the segment containing the given offset
+     */
+    private int getSegment(int offset) {
+        int low = 0;
+        int high = count - 1;
+        while(low < high) {
+            int mid = (low + high + 1) >> 1;
+            if(starts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the text element displaying the character at the given offset
+     *
+     * @param offset offset within the indexed text
+     * @return the text element or null if the index is empty
+     */
+    HTMLElement getElementAt(int offset) {
+        if(count == 0) {
+            return null;
+        }
+        return elements[getSegment(offset)];
+    }
+
+    /**
+     * Returns the labels displaying the text within the given range
+     *
+     * @param start the offset of the first character
+     * @param end the offset after the last character
+     * @return the labels in document order
+     */
+    Vector getComponents(int start, int end) {
+        Vector result = new Vector();
+        if(count == 0 || end <= start) {
+            return result;
+        }
+        String t = getText();
+        int first = getSegment(start);
+        int last = getSegment(end - 1);
+        for(int seg = first ; seg <= last ; seg++) {
+            Vector comps = components[seg];
+            if(comps == null) {
+                comps = elements[seg].getUi();
+            }
+            if(comps == null) {
+                continue;
+            }
+            int segStart = starts[seg];
+            int segEnd = t.length();
+            if(seg + 1 < count) {
+                segEnd = starts[seg + 1];
+            }
+            String segText = t.substring(segStart, segEnd).toLowerCase();
+            int cursor = 0;
+            int size = comps.size();
+            for(int iter = 0 ; iter < size ; iter++) {
+                Object o = comps.elementAt(iter);
+                if(!(o instanceof Label)) {
+                    continue;
+                }
+                Label l = (Label)o;
+                String labelText = collapse(l.getText()).toLowerCase();
+                if(labelText.length() == 0) {
+                    continue;
+                }
+                int pos = segText.indexOf(labelText, cursor);
+                if(pos < 0) {
+                    // the label text was transformed, keep it to be on the safe side
+                    result.addElement(l);
+                    continue;
+                }
+                cursor = pos + labelText.length();
+                if(segStart + pos < end && segStart + cursor > start) {
+                    result.addElement(l);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collapses the whitespace of the given label text and trims it
+     */
+    private static String collapse(String str) {
+        if(str == null) {
+            return "";
+        }
+        StringBuffer b = new StringBuffer(str.length());
+        boolean space = true;
+        int len = str.length();
+        for(int iter = 0 ; iter < len ; iter++) {
+            char c = str.charAt(iter);
+            if(isWhiteSpace(c)) {
+                if(!space) {
+                    b.append(' ');
+                    space = true;
+                }
+            } else {
+                b.append(c);
+                space = false;
+            }
+        }
+        int l = b.length();
+        if(l > 0 && b.charAt(l - 1) == ' ') {
+            b.setLength(l - 1);
+        }
+        return b.toString();
+    }
+}
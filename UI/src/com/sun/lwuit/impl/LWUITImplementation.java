@@ -499,6 +499,20 @@ public abstract class LWUITImplementation {
      */
     public abstract Object scale(Object nativeImage, int width, int height);
 
+    /**
+     * Scales a native image using the given quality hint and returns the scaled version,
+     * by default the hint is ignored and the image is scaled using scale(Object, int, int)
+     * 
+     * @param nativeImage image to scale
+     * @param width width of the resulting image
+     * @param height height of the resulting image
+     * @param quality one of the Image.SCALE_* constants
+     * @return scaled image instance
+     */
+    public Object scale(Object nativeImage, int width, int height, int quality) {
+        return scale(nativeImage, width, height);
+    }
+
     private static int round(double d) {
         double f = Math.floor(d);
         double c = Math.ceil(d);
@@ -1061,6 +1075,35 @@ public abstract class LWUITImplementation {
         return false;
     }
 
+    /**
+     * Creates a platform specific alpha mask from the alpha channel of the given
+     * ARGB data, the mask can be drawn in any color using drawAlphaMask without
+     * recoloring the pixels. Bitmap fonts use this to avoid creating a tinted copy
+     * of the font image for every color in which text is drawn.
+     *
+     * @param argb the pixel data whose alpha channel forms the mask
+     * @param width the width of the mask
+     * @param height the height of the mask
+     * @return a native mask object or null if the platform doesn't support masks
+     * in which case the caller must tint the pixels on its own
+     */
+    public Object createAlphaMask(int[] argb, int width, int height) {
+        return null;
+    }
+
+    /**
+     * Draws a mask created by createAlphaMask so its top left coordinate corresponds
+     * to x/y, the coverage of the mask is applied to the given color
+     *
+     * @param graphics the graphics context
+     * @param mask the mask returned by createAlphaMask
+     * @param x the x coordinate.
+     * @param y the y coordinate.
+     * @param color the RGB color in which the mask is drawn
+     */
+    public void drawAlphaMask(Object graphics, Object mask, int x, int y, int color) {
+    }
+
     /**
      * Draws a filled triangle with the given coordinates
      * 
@@ -2048,6 +2091,8 @@ public abstract class LWUITImplementation {
      * @return true if the image is opaque
      */
     public boolean isOpaque(Image lwuitImage, Object nativeImage) {
+        // a lent pixel array can cost the native image its acceleration (e.g. on SE)
+        // so this works on a copy like it always did
         int[] rgb = lwuitImage.getRGBCached();
         for (int iter = 0; iter < rgb.length; iter++) {
             if ((rgb[iter] & 0xff000000) != 0xff000000) {
@@ -2057,6 +2102,21 @@ public abstract class LWUITImplementation {
         return true;
     }
 
+    /**
+     * Lends the int array holding the ARGB pixels of the native image if the platform
+     * keeps the pixels of the image in such an array. The array must not be modified
+     * by the caller. The default implementation returns null which indicates the pixels
+     * need to be copied using getRGB. This is only invoked when a caller explicitly
+     * asks for pixel access since lending the array may stop the platform from
+     * accelerating the image.
+     *
+     * @param nativeImage the native image
+     * @return a view of the pixels or null
+     */
+    public RGBView getRGBView(Object nativeImage) {
+        return null;
+    }
+
     /**
      * Indicates whether the underlying implementation can draw using an affine
      * transform hence methods such as rotate, scale and shear would work
@@ -211,6 +211,10 @@ public class GroupLayout extends Layout {
     // Maps from Component to ComponentInfo.  This is used for tracking
     // information specific to a Component.
     private Hashtable componentInfos;
+
+    // The values of componentInfos, cached to avoid enumerating the
+    // Hashtable on every layout. Null when componentInfos changes.
+    private ComponentInfo[] componentInfoArray;
     
     // Container we're doing layout for.
     private Container host;
@@ -406,10 +410,10 @@ public class GroupLayout extends Layout {
                 " " + spring.getMaximumSize(axis) + 
                 padding + "]\n");
         if (spring instanceof Group) {
-            Vector springs = ((Group)spring).springs;
+            SpringList springs = ((Group)spring).springs;
             indent += "  ";
             for (int counter = 0; counter < springs.size(); counter++) {
-                dump(buffer, (Spring)springs.elementAt(counter), indent, axis);
+                dump(buffer, springs.elementAt(counter), indent, axis);
             }
         }
     }
@@ -727,6 +731,7 @@ public class GroupLayout extends Layout {
         }
         info.setComponent(newComponent);
         componentInfos.put(newComponent, info);
+        componentInfoArray = null;
         invalidateHost();
     }
 
@@ -775,6 +780,7 @@ public class GroupLayout extends Layout {
     public void removeLayoutComponent(Component component) {
         ComponentInfo info = (ComponentInfo)componentInfos.remove(component);
         if (info != null) {
+            componentInfoArray = null;
             info.dispose();
             springsChanged = true;
             isValid = false;
@@ -846,11 +852,9 @@ public class GroupLayout extends Layout {
         verticalGroup.setSize(VERTICAL, 0, height);
         
         // Step 4: apply the size to the components.
-        Enumeration componentInfo = componentInfos.elements();
-        while (componentInfo.hasMoreElements()) {
-            ComponentInfo info = (ComponentInfo)componentInfo.nextElement();
-            Component c = info.getComponent();
-            info.setBounds(insetLeft, insetTop, width, ltr);
+        ComponentInfo[] infos = getComponentInfos();
+        for (int counter = 0; counter < infos.length; counter++) {
+            infos[counter].setBounds(insetLeft, insetTop, width, ltr);
         }
     }
     
@@ -926,14 +930,32 @@ public class GroupLayout extends Layout {
     
     private void prepare(int sizeType) {
         boolean visChanged = false;
+        ComponentInfo[] infos = getComponentInfos();
+        // Step 1: If valid, only clear the springs of components whose
+        // visibility or preferred size changed since the springs were sized.
+        // A change in visibility moves the autopadding so it clears all
+        // the springs.
+        if (isValid) {
+            for (int counter = 0; counter < infos.length; counter++) {
+                if (infos[counter].updateVisibility()) {
+                    visChanged = true;
+                }
+            }
+            if (visChanged) {
+                isValid = false;
+            } else {
+                for (int counter = 0; counter < infos.length; counter++) {
+                    infos[counter].updateCachedSize();
+                }
+            }
+        }
         // Step 1: If not-valid, clear springs and update visibility.
         if (!isValid) {
             isValid = true;
             horizontalGroup.setSize(HORIZONTAL, UNSET, UNSET);
             verticalGroup.setSize(VERTICAL, UNSET, UNSET);
-            for (Enumeration cis = componentInfos.elements();
-                     cis.hasMoreElements();) {
-                ComponentInfo ci = (ComponentInfo)cis.nextElement();
+            for (int counter = 0; counter < infos.length; counter++) {
+                ComponentInfo ci = infos[counter];
                 if (ci.updateVisibility()) {
                     visChanged = true;
                 }
@@ -990,9 +1012,9 @@ public class GroupLayout extends Layout {
     }
     
     private void checkComponents() {
-        Enumeration infos = componentInfos.elements();
-        while (infos.hasMoreElements()) {
-            ComponentInfo info = (ComponentInfo)infos.nextElement();
+        ComponentInfo[] infos = getComponentInfos();
+        for (int counter = 0; counter < infos.length; counter++) {
+            ComponentInfo info = infos[counter];
             if (info.horizontalSpring == null) {
                 throw new IllegalStateException(info.component +
                         " is not attached to a horizontal group");
@@ -1005,9 +1027,9 @@ public class GroupLayout extends Layout {
     }
     
     private void registerComponents(Group group, int axis) {
-        Vector springs = group.springs;
+        SpringList springs = group.springs;
         for (int counter = springs.size() - 1; counter >= 0; counter--) {
-            Spring spring = (Spring)springs.elementAt(counter);
+            Spring spring = springs.elementAt(counter);
             if (spring instanceof ComponentSpring) {
                 ((ComponentSpring)spring).installIfNecessary(axis);
             } else if (spring instanceof Group) {
@@ -1032,6 +1054,32 @@ public class GroupLayout extends Layout {
         }
     }
     
+    /**
+     * Returns the values of componentInfos as an array.
+     */
+    private ComponentInfo[] getComponentInfos() {
+        if (componentInfoArray == null) {
+            componentInfoArray = new ComponentInfo[componentInfos.size()];
+            int counter = 0;
+            for (Enumeration e = componentInfos.elements(); e.hasMoreElements();) {
+                componentInfoArray[counter] = (ComponentInfo)e.nextElement();
+                counter++;
+            }
+        }
+        return componentInfoArray;
+    }
+
+    /**
+     * Clears the cached sizes of the specified Spring and the Groups
+     * containing it, the sizes of other Springs remain valid.
+     */
+    private static void invalidateSpring(Spring spring) {
+        while (spring != null) {
+            spring.unset();
+            spring = spring.getParent();
+        }
+    }
+
     /**
      * Returns the <code>ComponentInfo</code> for the specified Component.
      */
@@ -1040,6 +1088,7 @@ public class GroupLayout extends Layout {
         if (info == null) {
             info = new ComponentInfo(component);
             componentInfos.put(component, info);
+            componentInfoArray = null;
             if (component.getParent() != host) {
                 host.addComponent(component);
             }
@@ -1285,6 +1334,65 @@ public class GroupLayout extends Layout {
         }
     }
     
+    /**
+     * Array backed list of the Springs of a Group, unlike a Vector it
+     * doesn't synchronize and doesn't require casting the elements.
+     */
+    private static final class SpringList {
+        private Spring[] elements = new Spring[4];
+        private int count;
+
+        int size() {
+            return count;
+        }
+
+        Spring elementAt(int index) {
+            if (index >= count) {
+                throw new ArrayIndexOutOfBoundsException(index);
+            }
+            return elements[index];
+        }
+
+        void addElement(Spring spring) {
+            insertElementAt(spring, count);
+        }
+
+        void insertElementAt(Spring spring, int index) {
+            if (count == elements.length) {
+                Spring[] newElements = new Spring[count * 2];
+                System.arraycopy(elements, 0, newElements, 0, count);
+                elements = newElements;
+            }
+            System.arraycopy(elements, index, elements, index + 1, count - index);
+            elements[index] = spring;
+            count++;
+        }
+
+        void removeElementAt(int index) {
+            count--;
+            System.arraycopy(elements, index + 1, elements, index, count - index);
+            elements[count] = null;
+        }
+
+        boolean removeElement(Spring spring) {
+            int index = indexOf(spring);
+            if (index < 0) {
+                return false;
+            }
+            removeElementAt(index);
+            return true;
+        }
+
+        int indexOf(Spring spring) {
+            for (int counter = 0; counter < count; counter++) {
+                if (elements[counter] == spring) {
+                    return counter;
+                }
+            }
+            return -1;
+        }
+    }
+    
     /**
      * Group provides for commonality between the two types of operations
      * supported by <code>GroupLayout</code>: laying out components one
@@ -1296,10 +1404,10 @@ public class GroupLayout extends Layout {
     public abstract class Group extends Spring {
         // private int origin;
         // private int size;
-        Vector springs;
+        SpringList springs;
         
         Group() {
-            springs = new Vector();
+            springs = new SpringList();
         }
         
         int indexOf(Spring spring) {
@@ -1386,7 +1494,7 @@ public class GroupLayout extends Layout {
         }
         
         Spring getSpring(int index) {
-            return (Spring)springs.elementAt(index);
+            return springs.elementAt(index);
         }
         
         int getSpringSize(Spring spring, int axis, int type) {
@@ -1430,7 +1538,7 @@ public class GroupLayout extends Layout {
         void removeAutopadding() {
             unset();
             for (int counter = springs.size() - 1; counter >= 0; counter--) {
-                Spring spring = (Spring)springs.elementAt(counter);
+                Spring spring = springs.elementAt(counter);
                 if (spring instanceof AutopaddingSpring) {
                     if (((AutopaddingSpring)spring).getUserCreated()) {
                         ((AutopaddingSpring)spring).reset();
@@ -1447,7 +1555,7 @@ public class GroupLayout extends Layout {
             // Clear cached pref/min/max.
             unset();
             for (int counter = springs.size() - 1; counter >= 0; counter--) {
-                Spring spring = (Spring)springs.elementAt(counter);
+                Spring spring = springs.elementAt(counter);
                 if (spring instanceof AutopaddingSpring) {
                     ((AutopaddingSpring)spring).unset();
                 } else if (spring instanceof Group) {
@@ -1458,7 +1566,7 @@ public class GroupLayout extends Layout {
         
         void calculateAutopadding(int axis) {
             for (int counter = springs.size() - 1; counter >= 0; counter--) {
-                Spring spring = (Spring)springs.elementAt(counter);
+                Spring spring = springs.elementAt(counter);
                 if (spring instanceof AutopaddingSpring) {
                     // Force size to be reset.
                     spring.unset();
@@ -1473,7 +1581,7 @@ public class GroupLayout extends Layout {
         
         boolean willHaveZeroSize(boolean treatAutopaddingAsZeroSized) {
             for (int i = springs.size() -1; i >= 0; i--) {
-                Spring spring = (Spring)springs.elementAt(i);
+                Spring spring = springs.elementAt(i);
                 if (!spring.willHaveZeroSize(treatAutopaddingAsZeroSized)) {
                     return false;
                 }
@@ -1492,6 +1600,11 @@ public class GroupLayout extends Layout {
      */
     public class SequentialGroup extends Group {
         private Spring baselineSpring;
+
+        // Scratch arrays used when resizing the springs
+        private int[] resizeIndexes;
+        private int[] resizeDeltas;
+        private int[] resizeSizes;
         
         SequentialGroup() {
         }
@@ -1819,35 +1932,35 @@ public class GroupLayout extends Layout {
             //    recalculate how must space the remaining springs will get.
             // 5. Set the size of the springs.
 
-            // First pass, sort the resizable springs into resizable
-            Vector resizable = buildResizableList(axis, useMin);
-            int resizableCount = resizable.size();
+            // First pass, collect the resizable springs
+            int resizableCount = buildResizableList(axis, useMin);
             
             if (resizableCount > 0) {
                 // How much we would like to give each Spring.
                 int sDelta = delta / resizableCount;
                 // Remaining space.
                 int slop = delta - sDelta * resizableCount;
-                int[] sizes = new int[springCount];
+                int[] sizes = resizeSizes;
+                for (int counter = 0; counter < springCount; counter++) {
+                    sizes[counter] = 0;
+                }
                 int sign = useMin ? -1 : 1;
                 // Second pass, accumulate the resulting deltas (relative to
                 // preferred) into sizes.
                 for (int counter = 0; counter < resizableCount; counter++) {
-                    SpringDelta springDelta = (SpringDelta)resizable.
-                            elementAt(counter);
                     if ((counter + 1) == resizableCount) {
                         sDelta += slop;
                     }
-                    springDelta.delta = Math.min(sDelta, springDelta.delta);
-                    delta -= springDelta.delta;
-                    if (springDelta.delta != sDelta && counter + 1 <
+                    int springDelta = Math.min(sDelta, resizeDeltas[counter]);
+                    delta -= springDelta;
+                    if (springDelta != sDelta && counter + 1 <
                             resizableCount) {
                         // Spring didn't take all the space, reset how much
                         // each spring will get.
                         sDelta = delta / (resizableCount - counter - 1);
                         slop = delta - sDelta * (resizableCount - counter - 1);
                     }
-                    sizes[springDelta.index] = sign * springDelta.delta;
+                    sizes[resizeIndexes[counter]] = sign * springDelta;
                 }
                 
                 // And finally set the size of each spring
@@ -1875,13 +1988,21 @@ public class GroupLayout extends Layout {
         }
         
         /**
-         * Returns the sorted list of SpringDelta's for the current set of
-         * Springs.
+         * Fills resizeIndexes and resizeDeltas with the index and the
+         * amount each of the resizable Springs can be resized by (pref - min
+         * or max - pref), in the order of the Springs. The arrays are kept
+         * between layouts so resizing doesn't create garbage.
+         *
+         * @return the number of resizable Springs
          */
-        private Vector buildResizableList(int axis, boolean useMin) {
-            // First pass, figure out what is resizable
+        private int buildResizableList(int axis, boolean useMin) {
             int size = springs.size();
-            Vector sorted = new Vector(size);
+            if (resizeSizes == null || resizeSizes.length < size) {
+                resizeIndexes = new int[size];
+                resizeDeltas = new int[size];
+                resizeSizes = new int[size];
+            }
+            int count = 0;
             for (int counter = 0; counter < size; counter++) {
                 Spring spring = getSpring(counter);
                 int sDelta;
@@ -1893,26 +2014,17 @@ public class GroupLayout extends Layout {
                             spring.getPreferredSize(axis);
                 }
                 if (sDelta > 0) {
-                    sorted.addElement(new SpringDelta(counter, sDelta));
-                }
-            }
-            //size = sorted.size();
-            
-            // insertion sort for a relatively small vector
-	    for (int i = 0 ; i < 0 ; i++) {
-		for (int j = i; j > 0 && ((SpringDelta)sorted.elementAt(j-1)).compareTo(sorted.elementAt(j)) > 0 ; j--) {
-                    Object a = sorted.elementAt(j-1);
-                    Object b = sorted.elementAt(j);
-		    sorted.setElementAt(b, j - 1);
-		    sorted.setElementAt(a, j);
+                    resizeIndexes[count] = counter;
+                    resizeDeltas[count] = sDelta;
+                    count++;
                 }
             }
-            return sorted;
+            return count;
         }
         
         private int indexOfNextNonZeroSpring(int index, boolean treatAutopaddingAsZeroSized) {
             while (index < springs.size()) {
-                Spring spring = (Spring)springs.elementAt(index);
+                Spring spring = springs.elementAt(index);
                 if (!((Spring)spring).willHaveZeroSize(treatAutopaddingAsZeroSized)) {
                     return index;
                 }
@@ -2103,31 +2215,6 @@ public class GroupLayout extends Layout {
     }
     
     
-    /**
-     * Used in figuring out how much space to give resizable springs.
-     */
-    private static final class SpringDelta  {
-        // Original index.
-        public final int index;
-        // Delta, one of pref - min or max - pref.
-        public int delta;
-        
-        public SpringDelta(int index, int delta) {
-            this.index = index;
-            this.delta = delta;
-        }
-        
-        public int compareTo(Object o) {
-            return delta - ((SpringDelta)o).delta;
-        }
-        
-        public String toString() {
-            return super.toString() + "[index=" + index + ", delta=" +
-                    delta + "]";
-        }
-    }
-    
-    
     /**
      * A <code>Group</code> that lays out its elements on top of each
      * other.  If a child element is smaller than the provided space it
@@ -2789,6 +2876,11 @@ public class GroupLayout extends Layout {
             }
         }
         
+        void unset() {
+            super.unset();
+            baseline = -1;
+        }
+        
         int getOrigin() {
             return origin;
         }
@@ -3310,6 +3402,10 @@ public class GroupLayout extends Layout {
 
         private boolean visible;
         private Boolean honorsVisibility;
+
+        // The preferred size of the component when the springs were sized
+        private int preferredWidth = -1;
+        private int preferredHeight = -1;
         
         ComponentInfo(Component component) {
             this.component = component;
@@ -3383,6 +3479,8 @@ public class GroupLayout extends Layout {
         
         public void setComponent(Component component) {
             this.component = component;
+            preferredWidth = -1;
+            preferredHeight = -1;
             if (horizontalSpring != null) {
                 horizontalSpring.setComponent(component);
             }
@@ -3440,6 +3538,8 @@ public class GroupLayout extends Layout {
         }
 
         public void clearCachedSize() {
+            preferredWidth = component.getPreferredW();
+            preferredHeight = component.getPreferredH();
             if (horizontalMaster != null) {
                 horizontalMaster.clearCachedSize();
             }
@@ -3447,6 +3547,54 @@ public class GroupLayout extends Layout {
                 verticalMaster.clearCachedSize();
             }
         }
+
+        /**
+         * Clears the cached sizes of the springs of this component if its
+         * preferred size changed, along with the sizes of the components
+         * linked to it.
+         */
+        void updateCachedSize() {
+            int width = component.getPreferredW();
+            if (width != preferredWidth) {
+                preferredWidth = width;
+                invalidateSprings(HORIZONTAL);
+            }
+            int height = component.getPreferredH();
+            if (height != preferredHeight) {
+                preferredHeight = height;
+                invalidateSprings(VERTICAL);
+            }
+        }
+
+        private void invalidateSprings(int axis) {
+            LinkInfo master;
+            if (axis == HORIZONTAL) {
+                master = horizontalMaster;
+            } else {
+                master = verticalMaster;
+            }
+            if (master == null) {
+                invalidateSpring(getSpring(axis));
+            } else {
+                master.clearCachedSize();
+                for (int i = 0; i < master.linked.size(); i++) {
+                    ComponentInfo info = (ComponentInfo)master.linked.elementAt(i);
+                    invalidateSpring(info.getSpring(axis));
+                }
+            }
+            // the baseline depends on the width as well
+            if (axis == HORIZONTAL && verticalSpring != null) {
+                verticalSpring.baseline = -1;
+                invalidateSpring(verticalSpring.getParent());
+            }
+        }
+
+        private ComponentSpring getSpring(int axis) {
+            if (axis == HORIZONTAL) {
+                return horizontalSpring;
+            }
+            return verticalSpring;
+        }
         
         int getLinkSize(int axis, int type) {
             if (axis == HORIZONTAL) {
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2008, 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores
+ * CA 94065 USA or visit www.oracle.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.lwuit.list;
+
+import com.sun.lwuit.Component;
+
+/**
+ * Supplies the rows of a {@link com.sun.lwuit.LazyContainer}, the container only
+ * asks for the rows that are near the visible area and hands rows that scrolled
+ * far away back to the provider for reuse.
+ */
+public interface ComponentProvider {
+    /**
+     * Returns the number of rows
+     *
+     * @return the number of rows
+     */
+    public int getSize();
+
+    /**
+     * Returns the component representing the row at the given index. The recycled
+     * component is a row that is no longer shown and can be updated to represent
+     * the given index instead of creating a new component, it is null if no such
+     * row is available. The returned component must not be contained in another
+     * container.
+     *
+     * @param index the index of the row
+     * @param recycled a previously returned component that is no longer in use or null
+     * @return the component for the row
+     */
+    public Component getComponentAt(int index, Component recycled);
+}
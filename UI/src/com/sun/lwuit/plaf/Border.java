@@ -1026,7 +1026,7 @@ public class Border {
                         Graphics imageG = i.getGraphics();
                         imageG.setColor(0);
                         imageG.fillRoundRect(0, 0, width, height, arcWidth, arcHeight);
-                        int[] rgb = i.getRGBCached();
+                        int[] rgb = i.getRGBView().toPackedArray();
                         int transColor = rgb[0];
                         int[] imageRGB;
                         if(s.getBackgroundType() == Style.BACKGROUND_IMAGE_SCALED) {
@@ -542,12 +542,19 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
         int leftPadding = ta.getStyle().getPadding(ta.isRTL(), Component.LEFT);
         int rightPadding = ta.getStyle().getPadding(ta.isRTL(), Component.RIGHT);
         int topPadding = ta.getStyle().getPadding(false, Component.TOP);
-        boolean shouldBreak = false;
+        int rowHeight = ta.getRowsGap() + fontHeight;
+
+        // only the rows intersecting the clip are painted
+        int textY = ta.getY() + topPadding;
+        int firstRow = 0;
+        if(oY > textY) {
+            firstRow = (oY - textY) / rowHeight;
+        }
+        int lastRow = Math.min(line - 1, (oY + oHeight - textY) / rowHeight);
         
-        for (int i = 0; i < line; i++) {
+        for (int i = firstRow; i <= lastRow; i++) {
             int x = ta.getX() + leftPadding;
-            int y = ta.getY() +  topPadding +
-                    (ta.getRowsGap() + fontHeight) * i;
+            int y = textY + rowHeight * i;
             if(Rectangle.intersects(x, y, ta.getWidth(), fontHeight, oX, oY, oWidth, oHeight)) {
                 
                 String rowText = (String) ta.getTextAt(i);
@@ -571,11 +578,6 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
                 }
             
                 g.drawString(displayText, x, y ,ta.getStyle().getTextDecoration());
-                shouldBreak = true;
-            }else{
-                if(shouldBreak){
-                    break;
-                }
             }
         }
     }
@@ -644,12 +646,12 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
             switch (l.getTextPosition()) {
                 case Label.LEFT:
                 case Label.RIGHT:
-                    prefW += font.stringWidth(text);
+                    prefW += getLabelTextWidth(l, text, font);
                     prefH = Math.max(prefH, font.getHeight());
                     break;
                 case Label.BOTTOM:
                 case Label.TOP:
-                    prefW = Math.max(prefW, font.stringWidth(text));
+                    prefW = Math.max(prefW, getLabelTextWidth(l, text, font));
                     prefH += font.getHeight();
                     break;
             }
@@ -877,6 +879,17 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
         return align;
     }
 
+    /**
+     * Returns the width of the given label text using the measurement cached by the
+     * label when the text is the label text
+     */
+    private int getLabelTextWidth(Label l, String text, Font f) {
+        if(text == l.getText()) {
+            return l.getTextWidth(f);
+        }
+        return f.stringWidth(text);
+    }
+
     private void drawComponent(Graphics g, Label l, Image icon, Image stateIcon, int preserveSpaceForState) {
         setFG(g, l);
 
@@ -958,7 +971,7 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
                             leftPadding +
                             rightPadding +
                             ((icon != null) ? icon.getWidth() + l.getGap() : 0) +
-                            font.stringWidth(text))) / 2;
+                            getLabelTextWidth(l, text, font))) / 2;
                     x = Math.max(x, cmpX + leftPadding + preserveSpaceForState);
                     y = y + (cmpHeight - (topPadding +
                             bottomPadding +
@@ -970,7 +983,7 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
                     x = x + (cmpWidth - (preserveSpaceForState + leftPadding +
                             rightPadding +
                             Math.max(((icon != null) ? icon.getWidth() + l.getGap() : 0),
-                            font.stringWidth(text)))) / 2;
+                            getLabelTextWidth(l, text, font)))) / 2;
                     x = Math.max(x, cmpX + leftPadding + preserveSpaceForState);
                     y = y + (cmpHeight - (topPadding +
                             bottomPadding +
@@ -984,7 +997,7 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
                 case Label.RIGHT:
                     x = cmpX + cmpWidth - rightPadding -
                             ( ((icon != null) ? (icon.getWidth() + gap) : 0) +
-                            font.stringWidth(text));
+                            getLabelTextWidth(l, text, font));
                     if(l.isRTL()) {
                         x = Math.max(x - preserveSpaceForState, cmpX + leftPadding);
                     } else {
@@ -999,7 +1012,7 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
                 case Label.TOP:
                     x = cmpX + cmpWidth - rightPadding -
                              (Math.max(((icon != null) ? (icon.getWidth()) : 0),
-                            font.stringWidth(text)));
+                            getLabelTextWidth(l, text, font)));
                     x = Math.max(x, cmpX + leftPadding + preserveSpaceForState);
                     y = y + (cmpHeight - (topPadding +
                             bottomPadding +
@@ -1024,7 +1037,7 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
         if (icon == null) { // no icon only string 
             drawLabelString(g, l, text, x, y, textSpaceW);
         } else {
-            int strWidth = font.stringWidth(text);
+            int strWidth = getLabelTextWidth(l, text, font);
             int iconWidth = icon.getWidth();
             int iconHeight = icon.getHeight();
             int iconStringWGap;
@@ -1117,9 +1130,9 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
         if (l.isTickerRunning()) {
             if (l.getShiftText() > 0) {
                 if (l.getShiftText() > textSpaceW) {
-                    l.setShiftText(x - l.getX() - style.getFont().stringWidth(text));
+                    l.setShiftText(x - l.getX() - getLabelTextWidth(l, text, style.getFont()));
                 }
-            } else if (l.getShiftText() + style.getFont().stringWidth(text) < 0) {
+            } else if (l.getShiftText() + getLabelTextWidth(l, text, style.getFont()) < 0) {
                 l.setShiftText(textSpaceW);
             }
         }
@@ -1146,7 +1159,7 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
         Font f = style.getFont();
         boolean rtl = l.isRTL();
         boolean isTickerRunning = l.isTickerRunning();
-        int txtW = f.stringWidth(text);
+        int txtW = getLabelTextWidth(l, text, f);
         if ((!isTickerRunning) || rtl) {
             //if there is no space to draw the text add ... at the end
             if (txtW > textSpaceW && textSpaceW > 0) {
@@ -1167,14 +1180,14 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
             		x = x - txtW + textSpaceW;
                 } else {
                     if (l.isEndsWith3Points()) {
-                        String points = "...";
-                        int index = 1;
-                        int widest = f.charWidth('W');
-                        int pointsW = f.stringWidth(points);
-                        while (fastCharWidthCheck(text, index, textSpaceW - pointsW, widest, f)){
-                            index++;
+                        if(text == l.getText()) {
+                            text = l.getTruncatedText(f, textSpaceW);
+                        } else {
+                            String points = "...";
+                            int pointsW = f.stringWidth(points);
+                            int index = f.charsFit(text, 0, textSpaceW - pointsW - 1);
+                            text = text.substring(0, Math.max(1, index)) + points;
                         }
-                        text = text.substring(0, Math.max(1, index-1)) + points;
                         txtW =  f.stringWidth(text);
                     }
                 }
@@ -1185,14 +1198,6 @@ public class DefaultLookAndFeel extends LookAndFeel implements FocusListener {
         return Math.min(txtW, textSpaceW);
     }
 
-    private boolean fastCharWidthCheck(String s, int length, int width, int charWidth, Font f) {
-        if(length * charWidth < width) {
-            return true;
-        }
-        length = Math.min(s.length(), length);
-        return f.substringWidth(s, 0, length) < width;
-    }
-    
     /**
      * @inheritDoc
      */
@@ -365,6 +365,21 @@ public class Style {
      * of UNIT_TYPE_PIXELS, UNIT_TYPE_DIPS or UNIT_TYPE_SCREEN_PERCENTAGE
      */
     private byte[] marginUnit;
+
+    /**
+     * Padding and margin converted to pixels, the first four entries are indexed by
+     * orientation and the last four hold the values for RTL components. The arrays
+     * are null when they need to be resolved again.
+     */
+    private int[] resolvedPadding;
+    private int[] resolvedMargin;
+
+    /**
+     * The display size for which units other than pixels were resolved, screen
+     * percentages and the device density used for dips derive from it
+     */
+    private int resolvedDisplayWidth = -1;
+    private int resolvedDisplayHeight = -1;
     private byte transparency = (byte) 0xFF; //no transparency
     private Painter bgPainter;
 
@@ -1143,6 +1158,7 @@ public class Style {
             padding[Component.BOTTOM] = bottom;
             padding[Component.LEFT] = left;
             padding[Component.RIGHT] = right;
+            resolvedPadding = null;
 
             modifiedFlag |= PADDING_MODIFIED;
             firePropertyChanged(PADDING);
@@ -1179,6 +1195,7 @@ public class Style {
             margin[Component.BOTTOM] = bottom;
             margin[Component.LEFT] = left;
             margin[Component.RIGHT] = right;
+            resolvedMargin = null;
 
             modifiedFlag |= MARGIN_MODIFIED;
             firePropertyChanged(MARGIN);
@@ -1228,8 +1245,52 @@ public class Style {
      * @return number of padding pixels in the givven orientation
      */
     public int getPadding(boolean rtl, int orientation) {
-        int v = getPaddingValue(rtl, orientation);
-        return convertUnit(paddingUnit, v, orientation);
+        if (orientation < Component.TOP || orientation > Component.RIGHT) {
+            throw new IllegalArgumentException("wrong orientation " + orientation);
+        }
+        validateResolvedUnits();
+        int[] r = resolvedPadding;
+        if(r == null) {
+            r = resolve(padding, paddingUnit);
+            resolvedPadding = r;
+        }
+        if(rtl) {
+            return r[orientation + 4];
+        }
+        return r[orientation];
+    }
+
+    /**
+     * Discards the resolved padding and margin if they were converted from units
+     * that depend on the display and the display size changed since
+     */
+    private void validateResolvedUnits() {
+        if(paddingUnit != null || marginUnit != null) {
+            Display d = Display.getInstance();
+            int w = d.getDisplayWidth();
+            int h = d.getDisplayHeight();
+            if(w != resolvedDisplayWidth || h != resolvedDisplayHeight) {
+                resolvedDisplayWidth = w;
+                resolvedDisplayHeight = h;
+                resolvedPadding = null;
+                resolvedMargin = null;
+            }
+        }
+    }
+
+    /**
+     * Converts the given padding or margin values to pixels in both orientations
+     */
+    private int[] resolve(int[] values, byte[] unitType) {
+        int[] r = new int[8];
+        for(int iter = 0 ; iter < 4 ; iter++) {
+            r[iter] = convertUnit(unitType, values[iter], iter);
+        }
+        r[4 + Component.TOP] = r[Component.TOP];
+        r[4 + Component.BOTTOM] = r[Component.BOTTOM];
+        r[4 + Component.LEFT] = convertUnit(unitType, values[Component.RIGHT], Component.LEFT);
+        r[4 + Component.RIGHT] = convertUnit(unitType, values[Component.LEFT], Component.RIGHT);
+        return r;
     }
 
     private int convertUnit(byte[] unitType, int v, int orientation) {
@@ -1282,8 +1343,19 @@ public class Style {
      * @return number of margin pixels in the givven orientation
      */
     public int getMargin(boolean rtl, int orientation) {
-        int v = getMarginValue(rtl, orientation);
-        return convertUnit(marginUnit, v, orientation);
+        if (orientation < Component.TOP || orientation > Component.RIGHT) {
+            throw new IllegalArgumentException("wrong orientation " + orientation);
+        }
+        validateResolvedUnits();
+        int[] r = resolvedMargin;
+        if(r == null) {
+            r = resolve(margin, marginUnit);
+            resolvedMargin = r;
+        }
+        if(rtl) {
+            return r[orientation + 4];
+        }
+        return r[orientation];
     }
 
     /**
@@ -1578,6 +1650,7 @@ public class Style {
         }
         if (padding[orientation] != gap) {
             padding[orientation] = gap;
+            resolvedPadding = null;
 
             if (!override) {
                 modifiedFlag |= PADDING_MODIFIED;
@@ -1604,6 +1677,7 @@ public class Style {
         }
         if (margin[orientation] != gap) {
             margin[orientation] = gap;
+            resolvedMargin = null;
             if (!override) {
                 modifiedFlag |= MARGIN_MODIFIED;
             }
@@ -1715,11 +1789,13 @@ public class Style {
 
     /**
      * Indicates the units used for padding elements, if null pixels are used if not this is a 4 element array containing values
-     * of UNIT_TYPE_PIXELS, UNIT_TYPE_DIPS or UNIT_TYPE_SCREEN_PERCENTAGE
+     * of UNIT_TYPE_PIXELS, UNIT_TYPE_DIPS or UNIT_TYPE_SCREEN_PERCENTAGE. The values are
+     * converted to pixels once, changes to the array only take effect when it is set again.
      * @param paddingUnit the paddingUnit to set
      */
     public void setPaddingUnit(byte[] paddingUnit) {
         this.paddingUnit = paddingUnit;
+        resolvedPadding = null;
     }
 
     /**
@@ -1733,10 +1809,12 @@ public class Style {
 
     /**
      * Indicates the units used for margin elements, if null pixels are used if not this is a 4 element array containing values
-     * of UNIT_TYPE_PIXELS, UNIT_TYPE_DIPS or UNIT_TYPE_SCREEN_PERCENTAGE
+     * of UNIT_TYPE_PIXELS, UNIT_TYPE_DIPS or UNIT_TYPE_SCREEN_PERCENTAGE. The values are
+     * converted to pixels once, changes to the array only take effect when it is set again.
      * @param marginUnit the marginUnit to set
      */
     public void setMarginUnit(byte[] marginUnit) {
         this.marginUnit = marginUnit;
+        resolvedMargin = null;
     }
 }
@@ -28,7 +28,7 @@ import com.sun.lwuit.Component;
 import com.sun.lwuit.Container;
 import com.sun.lwuit.geom.Dimension;
 import com.sun.lwuit.plaf.Style;
-import java.util.Vector;
+import java.util.Hashtable;
 
 /**
  * Layout manager similar in spirit to HTML tables allowing rows and columns 
@@ -46,9 +46,63 @@ public class TableLayout extends Layout {
 
     private int[] columnSizes;
     private int[] columnPositions;
+    private int[] rowSizes;
     private int[] rowPositions;
     private boolean[] modifableColumnSize;
 
+    /**
+     * The preferred width/height of every cell including margins and its width/height
+     * percentage, indexed by row * columns + column. Empty and spanned cells are -1.
+     * These are compared on every layout so only the columns/rows of cells that changed
+     * are solved again.
+     */
+    private int[] cellWidths;
+    private int[] cellHeights;
+    private int[] cellWidthPercents;
+    private int[] cellHeightPercents;
+
+    /**
+     * Solved column tracks: the largest preferred width of the cells in the column,
+     * the largest preferred width of cells without a width percentage and the largest
+     * width percentage. Preferred is -1 for columns without cells.
+     */
+    private int[] columnPreferred;
+    private int[] columnFixed;
+    private int[] columnPercent;
+
+    /**
+     * Solved row tracks: the preferred height as returned by getPreferredSize, the
+     * largest preferred height of cells without a height percentage and the largest
+     * height percentage. Fixed is -1 for rows without cells.
+     */
+    private int[] rowPreferred;
+    private int[] rowFixed;
+    private int[] rowPercent;
+    private boolean[] dirtyColumns;
+    private boolean[] dirtyRows;
+
+    /**
+     * The values the column/row sizes were last solved for
+     */
+    private int solvedWidth = -1;
+    private int solvedHeight = -1;
+    private int solvedLeft;
+    private int solvedTop;
+    private boolean solvedRTL;
+    private boolean solvedScrollableX;
+    private boolean solvedScrollableY;
+
+    /**
+     * Maps components to their constraints
+     */
+    private Hashtable constraints = new Hashtable();
+
+    /**
+     * Indicates components were removed and the cells following them should move
+     * back, consecutive removals are reflowed together
+     */
+    private boolean reflowPending;
+
     /**
      * Special case marker SPAN constraint reserving place for other elements
      */
@@ -76,6 +130,7 @@ public class TableLayout extends Layout {
      * @return number of rows
      */
     public int getRows() {
+        reflow();
         return tablePositions.length;
     }
 
@@ -95,6 +150,7 @@ public class TableLayout extends Layout {
      * @return the component instance
      */
     public Component getComponentAt(int row, int column) {
+        reflow();
         return tablePositions[row][column].parent;
     }
 
@@ -114,30 +170,96 @@ public class TableLayout extends Layout {
 
         boolean rtl = parent.isRTL();
 
-        columnSizes = new int[tablePositions[0].length];
-        if(modifableColumnSize == null) {
-            modifableColumnSize = new boolean[tablePositions[0].length];
-        }
-        columnPositions = new int[tablePositions[0].length];
-        int[] rowSizes = new int[tablePositions.length];
-        rowPositions = new int[tablePositions.length];
-
         int pWidth = parent.getLayoutWidth() - parent.getSideGap() - left - right; 
         int pHeight = parent.getLayoutHeight() - parent.getBottomGap() - top - bottom; 
 
+        boolean scrollableX = parent.isScrollableX();
+        boolean scrollableY = parent.isScrollableY();
+        if(updateCells() || pWidth != solvedWidth || pHeight != solvedHeight || left != solvedLeft ||
+                top != solvedTop || rtl != solvedRTL || scrollableX != solvedScrollableX || 
+                scrollableY != solvedScrollableY || rowSizes.length != tablePositions.length) {
+            solve(pWidth, pHeight, left, top, rtl, scrollableX, scrollableY);
+        }
+
+        for(int r = 0 ; r < rowSizes.length ; r++) {
+            for(int c = 0 ; c < columnSizes.length ; c++) {
+                Constraint con = tablePositions[r][c];
+                int conX, conY, conW, conH;
+                if(con != null && con != H_SPAN_CONSTRAINT && con != V_SPAN_CONSTRAINT && con != VH_SPAN_CONSTRAINT) {
+                    Style componentStyle = con.parent.getStyle();
+                    int leftMargin = componentStyle.getMargin(parent.isRTL(), Component.LEFT);
+                    int topMargin = componentStyle.getMargin(false, Component.TOP);
+//                    conX = left + leftMargin + columnPositions[c]; // bugfix table with padding not drawn correctly
+//                    conY = top + topMargin + rowPositions[r]; // bugfix table with padding not drawn correctly
+                    conX = leftMargin + columnPositions[c];
+                    conY = topMargin + rowPositions[r];
+                    if(con.spanHorizontal > 1) {
+                        horizontalSpanningExists = true;
+                        int w = columnSizes[c];
+                        for(int sh = 1 ; sh < con.spanHorizontal ; sh++) {
+                            w += columnSizes[Math.min(c + sh, columnSizes.length - 1)];
+                        }
+
+                        // for RTL we need to move the component to the side so spanning will work
+                        if(rtl) {
+                            conX = left + leftMargin + columnPositions[c + con.spanHorizontal - 1];
+                        }
+                        conW = w - leftMargin - componentStyle.getMargin(parent.isRTL(), Component.RIGHT);
+                    } else {
+                        conW = columnSizes[c] - leftMargin - componentStyle.getMargin(parent.isRTL(), Component.RIGHT);
+                    }
+                    if(con.spanVertical > 1) {
+                        verticalSpanningExists = true;
+                        int h = rowSizes[r];
+                        for(int sv = 1 ; sv < con.spanVertical ; sv++) {
+                            h += rowSizes[Math.min(r + sv, rowSizes.length - 1)];
+                        }
+                        conH = h - topMargin - componentStyle.getMargin(false, Component.BOTTOM);
+                    } else {
+                        conH = rowSizes[r] - topMargin - componentStyle.getMargin(false, Component.BOTTOM);
+                    }
+                    placeComponent(rtl, con, conX, conY, conW, conH);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the sizes and positions of the columns and rows from the solved tracks
+     */
+    private void solve(int pWidth, int pHeight, int left, int top, boolean rtl, boolean scrollableX, boolean scrollableY) {
+        solvedWidth = pWidth;
+        solvedHeight = pHeight;
+        solvedLeft = left;
+        solvedTop = top;
+        solvedRTL = rtl;
+        solvedScrollableX = scrollableX;
+        solvedScrollableY = scrollableY;
+
+        int columns = tablePositions[0].length;
+        int rows = tablePositions.length;
+        if(columnSizes == null || columnSizes.length != columns) {
+            columnSizes = new int[columns];
+            columnPositions = new int[columns];
+        }
+        if(rowSizes == null || rowSizes.length != rows) {
+            rowSizes = new int[rows];
+            rowPositions = new int[rows];
+        }
+
         int currentX = left;
-        for(int iter = 0 ; iter < columnSizes.length ; iter++) {
-            columnSizes[iter] = getColumnWidthPixels(iter, pWidth, pWidth);
+        for(int iter = 0 ; iter < columns ; iter++) {
+            columnSizes[iter] = getColumnWidthPixels(iter, pWidth);
         }
 
         // try to recalculate the columns for none horizontally scrollable tables
         // so they are distributed sensibly if no room is available
-        if(!parent.isScrollableX()) {
+        if(!scrollableX) {
             int totalWidth = 0;
             int totalModifyablePixels = 0;
 
             // check how many columns we can modify (the user hasn't requested a specific size for those)
-            for(int iter = 0 ; iter < modifableColumnSize.length ; iter++) {
+            for(int iter = 0 ; iter < columns ; iter++) {
                 if(modifableColumnSize[iter]) {
                     totalModifyablePixels += columnSizes[iter];
                 }
@@ -149,7 +271,7 @@ public class TableLayout extends Layout {
                 int totalPixelsNecessary = totalModifyablePixels - totalPixelsToRemove;
 
                 // Go over the modifyable columns and remove the right pixels according to the ratio
-                for(int iter = 0 ; iter < modifableColumnSize.length ; iter++) {
+                for(int iter = 0 ; iter < columns ; iter++) {
                     if(modifableColumnSize[iter]) {
                         columnSizes[iter] = (int)(((float)columnSizes[iter]) / ((float)totalModifyablePixels) * totalPixelsNecessary);
                     }
@@ -157,7 +279,7 @@ public class TableLayout extends Layout {
             }
         }
 
-        for(int iter = 0 ; iter < columnSizes.length ; iter++) {
+        for(int iter = 0 ; iter < columns ; iter++) {
             if(rtl) {
                 currentX += columnSizes[iter];
                 columnPositions[iter] = pWidth - currentX;
@@ -168,8 +290,8 @@ public class TableLayout extends Layout {
         }
 
         int currentY = top;
-        for(int iter = 0 ; iter < rowSizes.length ; iter++) {
-            if(parent.isScrollableY()) {
+        for(int iter = 0 ; iter < rows ; iter++) {
+            if(scrollableY) {
                 rowSizes[iter] = getRowHeightPixels(iter, pHeight, -1);
             } else {
                 rowSizes[iter] = getRowHeightPixels(iter, pHeight, pHeight - currentY + top);
@@ -177,49 +299,143 @@ public class TableLayout extends Layout {
             rowPositions[iter] = currentY;
             currentY += rowSizes[iter];
         }
+    }
 
+    private static boolean isCell(Constraint c) {
+        return c != null && c != H_SPAN_CONSTRAINT && c != V_SPAN_CONSTRAINT && c != VH_SPAN_CONSTRAINT;
+    }
 
-        for(int r = 0 ; r < rowSizes.length ; r++) {
-            for(int c = 0 ; c < columnSizes.length ; c++) {
-                Constraint con = tablePositions[r][c];
-                int conX, conY, conW, conH;
-                if(con != null && con != H_SPAN_CONSTRAINT && con != V_SPAN_CONSTRAINT && con != VH_SPAN_CONSTRAINT) {
-                    Style componentStyle = con.parent.getStyle();
-                    int leftMargin = componentStyle.getMargin(parent.isRTL(), Component.LEFT);
-                    int topMargin = componentStyle.getMargin(false, Component.TOP);
-//                    conX = left + leftMargin + columnPositions[c]; // bugfix table with padding not drawn correctly
-//                    conY = top + topMargin + rowPositions[r]; // bugfix table with padding not drawn correctly
-                    conX = leftMargin + columnPositions[c];
-                    conY = topMargin + rowPositions[r];
-                    if(con.spanHorizontal > 1) {
-                        horizontalSpanningExists = true;
-                        int w = columnSizes[c];
-                        for(int sh = 1 ; sh < con.spanHorizontal ; sh++) {
-                            w += columnSizes[Math.min(c + sh, columnSizes.length - 1)];
-                        }
+    /**
+     * Compares the preferred size of every cell to the size it had when the tracks were
+     * solved and solves the columns and rows of the cells that changed again
+     *
+     * @return true if a column or row changed
+     */
+    private boolean updateCells() {
+        reflow();
+        int rows = tablePositions.length;
+        int columns = tablePositions[0].length;
+        int cells = rows * columns;
+        if(cellWidths == null || cellWidths.length != cells) {
+            cellWidths = new int[cells];
+            cellHeights = new int[cells];
+            cellWidthPercents = new int[cells];
+            cellHeightPercents = new int[cells];
+            for(int iter = 0 ; iter < cells ; iter++) {
+                cellWidths[iter] = -2;
+                cellHeights[iter] = -2;
+            }
+            columnPreferred = new int[columns];
+            columnFixed = new int[columns];
+            columnPercent = new int[columns];
+            modifableColumnSize = new boolean[columns];
+            dirtyColumns = new boolean[columns];
+            rowPreferred = new int[rows];
+            rowFixed = new int[rows];
+            rowPercent = new int[rows];
+            dirtyRows = new boolean[rows];
+        }
 
-                        // for RTL we need to move the component to the side so spanning will work
-                        if(rtl) {
-                            conX = left + leftMargin + columnPositions[c + con.spanHorizontal - 1];
-                        }
-                        conW = w - leftMargin - componentStyle.getMargin(parent.isRTL(), Component.RIGHT);
-                    } else {
-                        conW = columnSizes[c] - leftMargin - componentStyle.getMargin(parent.isRTL(), Component.RIGHT);
-                    }
-                    if(con.spanVertical > 1) {
-                        verticalSpanningExists = true;
-                        int h = rowSizes[r];
-                        for(int sv = 1 ; sv < con.spanVertical ; sv++) {
-                            h += rowSizes[Math.min(r + sv, rowSizes.length - 1)];
-                        }
-                        conH = h - topMargin - componentStyle.getMargin(false, Component.BOTTOM);
-                    } else {
-                        conH = rowSizes[r] - topMargin - componentStyle.getMargin(false, Component.BOTTOM);
-                    }
-                    placeComponent(rtl, con, conX, conY, conW, conH);
+        boolean changed = false;
+        int index = 0;
+        for(int r = 0 ; r < rows ; r++) {
+            Constraint[] row = tablePositions[r];
+            for(int c = 0 ; c < columns ; c++) {
+                Constraint con = row[c];
+                int w, h, wp, hp;
+                if(isCell(con)) {
+                    Style s = con.parent.getStyle();
+                    w = con.parent.getPreferredW() + s.getMargin(false, Component.LEFT) + s.getMargin(false, Component.RIGHT);
+                    h = con.parent.getPreferredH() + s.getMargin(false, Component.TOP) + s.getMargin(false, Component.BOTTOM);
+                    wp = con.width;
+                    hp = con.height;
+                } else {
+                    w = -1;
+                    h = -1;
+                    wp = -1;
+                    hp = -1;
+                }
+                if(w != cellWidths[index] || wp != cellWidthPercents[index]) {
+                    cellWidths[index] = w;
+                    cellWidthPercents[index] = wp;
+                    dirtyColumns[c] = true;
+                    changed = true;
                 }
+                if(h != cellHeights[index] || hp != cellHeightPercents[index]) {
+                    cellHeights[index] = h;
+                    cellHeightPercents[index] = hp;
+                    dirtyRows[r] = true;
+                    changed = true;
+                }
+                index++;
+            }
+        }
+        if(changed) {
+            for(int c = 0 ; c < columns ; c++) {
+                if(dirtyColumns[c]) {
+                    solveColumn(c);
+                    dirtyColumns[c] = false;
+                }
+            }
+            for(int r = 0 ; r < rows ; r++) {
+                if(dirtyRows[r]) {
+                    solveRow(r);
+                    dirtyRows[r] = false;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void solveColumn(int column) {
+        int columns = tablePositions[0].length;
+        int preferred = -1;
+        int fixed = 0;
+        int percent = 0;
+        for(int index = column ; index < cellWidths.length ; index += columns) {
+            int w = cellWidths[index];
+            if(w < 0) {
+                continue;
+            }
+            preferred = Math.max(preferred, w);
+            int p = cellWidthPercents[index];
+            if(p > 0) {
+                percent = Math.max(percent, p);
+                modifableColumnSize[column] = false;
+            } else {
+                fixed = Math.max(fixed, w);
+                modifableColumnSize[column] = true;
             }
         }
+        columnPreferred[column] = preferred;
+        columnFixed[column] = fixed;
+        columnPercent[column] = percent;
+    }
+
+    private void solveRow(int row) {
+        int columns = tablePositions[0].length;
+        int preferred = 0;
+        int fixed = -1;
+        int percent = 0;
+        int end = (row + 1) * columns;
+        for(int index = row * columns ; index < end ; index++) {
+            int h = cellHeights[index];
+            if(h < 0) {
+                continue;
+            }
+            fixed = Math.max(fixed, 0);
+            int p = cellHeightPercents[index];
+            if(p > 0) {
+                percent = Math.max(percent, p);
+                preferred = Math.max(preferred, p * Integer.MAX_VALUE / 100);
+            } else {
+                fixed = Math.max(fixed, h);
+                preferred = Math.max(preferred, h);
+            }
+        }
+        rowPreferred[row] = preferred;
+        rowFixed[row] = fixed;
+        rowPercent[row] = percent;
     }
 
     /**
@@ -308,54 +524,20 @@ public class TableLayout extends Layout {
         }
     }
 
-    private int getColumnWidthPixels(int column, int percentageOf, int available) {
-        int current = 0;
-        if(modifableColumnSize == null) {
-            modifableColumnSize = new boolean[tablePositions[0].length];
-        }
-
-        for(int iter = 0 ; iter < tablePositions.length ; iter++) {
-            Constraint c = tablePositions[iter][column];
-
-            if(c == null || c == H_SPAN_CONSTRAINT || c == V_SPAN_CONSTRAINT || c == VH_SPAN_CONSTRAINT) {
-                continue;
-            }
-
-            // width in percentage of the parent container
-            if(c.width > 0 && available > -1) {
-                current = Math.max(current, c.width * percentageOf / 100);
-                modifableColumnSize[column] = false;
-            } else {
-                Style s = c.parent.getStyle();
-                current = Math.max(current, c.parent.getPreferredW()  + s.getMargin(false, Component.LEFT) + s.getMargin(false, Component.RIGHT));
-                modifableColumnSize[column] = true;
-            }
-            if(available > -1) {
-                current = Math.min(available, current);
-            }
+    private int getColumnWidthPixels(int column, int available) {
+        if(columnPreferred[column] < 0) {
+            return 0;
         }
-        return current;
+        return Math.min(available, Math.max(columnFixed[column], columnPercent[column] * available / 100));
     }
 
     private int getRowHeightPixels(int row, int percentageOf, int available) {
-        int current = 0;
-        for(int iter = 0 ; iter < tablePositions[row].length ; iter++) {
-            Constraint c = tablePositions[row][iter];
-
-            if(c == null || c == H_SPAN_CONSTRAINT || c == V_SPAN_CONSTRAINT || c == VH_SPAN_CONSTRAINT) {
-                continue;
-            }
-
-            // height in percentage of the parent container
-            if(c.height > 0) {
-                current = Math.max(current, c.height * percentageOf / 100);
-            } else {
-                Style s = c.parent.getStyle();
-                current = Math.max(current, c.parent.getPreferredH() + s.getMargin(false, Component.TOP) + s.getMargin(false, Component.BOTTOM));
-            }
-            if(available > -1) {
-                current = Math.min(available, current);
-            }
+        if(rowFixed[row] < 0) {
+            return 0;
+        }
+        int current = Math.max(rowFixed[row], rowPercent[row] * percentageOf / 100);
+        if(available > -1) {
+            current = Math.min(available, current);
         }
         return current;
     }
@@ -368,12 +550,13 @@ public class TableLayout extends Layout {
         int w = s.getPadding(false, Component.LEFT) + s.getPadding(false, Component.RIGHT);
         int h = s.getPadding(false, Component.TOP) + s.getPadding(false, Component.BOTTOM);
 
-        for(int iter = 0 ; iter < tablePositions[0].length ; iter++) {
-            w += getColumnWidthPixels(iter, Integer.MAX_VALUE, -1);
+        updateCells();
+        for(int iter = 0 ; iter < columnPreferred.length ; iter++) {
+            w += Math.max(0, columnPreferred[iter]);
         }
 
-        for(int iter = 0 ; iter < tablePositions.length ; iter++) {
-            h += getRowHeightPixels(iter, Integer.MAX_VALUE, -1);
+        for(int iter = 0 ; iter < rowPreferred.length ; iter++) {
+            h += rowPreferred[iter];
         }
 
         return new Dimension(w, h);
@@ -385,6 +568,7 @@ public class TableLayout extends Layout {
      * @return the row where the next operation of add will appear
      */
     public int getNextRow() {
+        reflow();
         return currentRow;
     }
 
@@ -394,6 +578,7 @@ public class TableLayout extends Layout {
      * @return the column where the next operation of add will appear
      */
     public int getNextColumn() {
+        reflow();
         return currentColumn;
     }
 
@@ -438,6 +623,7 @@ public class TableLayout extends Layout {
      * @inheritDoc
      */
     public void addLayoutComponent(Object value, Component comp, Container c) {
+        reflow();
         Constraint con = (Constraint)value;
         if(con == null) {
             con = createConstraint();
@@ -455,6 +641,7 @@ public class TableLayout extends Layout {
             con.actualColumn = currentColumn;
         }
         con.parent = comp;
+        constraints.put(comp, con);
         if(con.actualRow >= tablePositions.length) {
             // increase the table row count implicitly
             addRow();
@@ -517,6 +704,7 @@ public class TableLayout extends Layout {
      * @return the amount of spanning 1 for no spanning
      */
     public int getCellHorizontalSpan(int row, int column) {
+        reflow();
         return tablePositions[row][column].spanHorizontal;
     }
 
@@ -528,6 +716,7 @@ public class TableLayout extends Layout {
      * @return the amount of spanning 1 for no spanning
      */
     public int getCellVerticalSpan(int row, int column) {
+        reflow();
         return tablePositions[row][column].spanVertical;
     }
 
@@ -539,6 +728,7 @@ public class TableLayout extends Layout {
      * @return true if the cell is a part of a span for another cell
      */
     public boolean isCellSpannedThroughVertically(int row, int column) {
+        reflow();
         return tablePositions[row][column] == V_SPAN_CONSTRAINT || tablePositions[row][column] == VH_SPAN_CONSTRAINT;
     }
 
@@ -550,6 +740,7 @@ public class TableLayout extends Layout {
      * @return true if the cell is a part of a span for another cell
      */
     public boolean isCellSpannedThroughHorizontally(int row, int column) {
+        reflow();
         return tablePositions[row][column] == H_SPAN_CONSTRAINT || tablePositions[row][column] == VH_SPAN_CONSTRAINT;
     }
 
@@ -575,28 +766,41 @@ public class TableLayout extends Layout {
      * @inheritDoc
      */
     public void removeLayoutComponent(Component comp) {
-        // reflow the table
-        Vector comps = new Vector();
+        Constraint con = (Constraint)constraints.remove(comp);
+        if(con == null) {
+            return;
+        }
+        if(tablePositions[con.actualRow][con.actualColumn] == con) {
+            tablePositions[con.actualRow][con.actualColumn] = null;
+        }
+        con.parent = null;
+        reflowPending = true;
+    }
+
+    /**
+     * Reflows the table after components were removed, the remaining cells are added
+     * again in the order in which they appear in the table
+     */
+    private void reflow() {
+        if(!reflowPending) {
+            return;
+        }
+        reflowPending = false;
+        Constraint[] cells = new Constraint[tablePositions.length * tablePositions[0].length];
+        int count = 0;
         for(int r = 0 ; r < tablePositions.length ; r++) {
             for(int c = 0 ; c < tablePositions[r].length ; c++) {
-                if(tablePositions[r][c] != null) {
-                    if(tablePositions[r][c].parent != comp) {
-                        comps.addElement(tablePositions[r][c]);
-                    } else {
-                        tablePositions[r][c].parent = null;
-                    }
+                if(isCell(tablePositions[r][c])) {
+                    cells[count] = tablePositions[r][c];
+                    count++;
                 }
                 tablePositions[r][c] = null;
             }
         }
         currentRow = 0;
         currentColumn = 0;
-        int count = comps.size();
         for(int iter = 0 ; iter < count ; iter++) {
-            Constraint con = (Constraint)comps.elementAt(iter);
-            if(con == H_SPAN_CONSTRAINT || con == V_SPAN_CONSTRAINT || con == VH_SPAN_CONSTRAINT) {
-                continue;
-            }
+            Constraint con = cells[iter];
             Component c = con.parent;
             con.parent = null;
             addLayoutComponent(con, c, c.getParent());
@@ -607,14 +811,7 @@ public class TableLayout extends Layout {
      * @inheritDoc
      */
     public Object getComponentConstraint(Component comp) {
-        for(int r = 0 ; r < tablePositions.length ; r++) {
-            for(int c = 0 ; c < tablePositions[r].length ; c++) {
-                if(tablePositions[r][c] != null && tablePositions[r][c].parent == comp) {
-                    return tablePositions[r][c];
-                }
-            }
-        }
-        return null;
+        return constraints.get(comp);
     }
 
     /**
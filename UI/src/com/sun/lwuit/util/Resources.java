@@ -35,6 +35,7 @@ import com.sun.lwuit.plaf.Border;
 import com.sun.lwuit.plaf.Style;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -753,12 +754,23 @@ public class Resources {
     }
     
     Image createImage() throws IOException {
+        int type = -1;
+        if(majorVersion != 0 || minorVersion != 0) {
+            type = input.readByte() & 0xff;
+        }
+        return createImage(type);
+    }
+
+    /**
+     * Creates an image whose type byte was already read from the input, the type is
+     * ignored for files of version 0 which don't have one
+     */
+    private Image createImage(int type) throws IOException {
         if(majorVersion == 0 && minorVersion == 0) {
             byte[] data = new byte[input.readInt()];
             input.readFully(data, 0, data.length);
             return EncodedImage.create(data);
         } else {
-            int type = input.readByte() & 0xff;
             switch(type) {
                 // PNG file
                 case 0xf1:
@@ -1003,7 +1015,14 @@ public class Resources {
     }
 
     Font loadBitmapFont(DataInputStream input, String id, com.sun.lwuit.Font font) throws IOException {
-        Image bitmap = createImage();
+        // the bitmap is only kept when it will actually be used by a font, the font
+        // converts the glyphs from the encoded image lazily as they are drawn
+        Image bitmap = null;
+        if(font == null && Font.isBitmapFontEnabled() && Font.getBitmapFont(id) == null) {
+            bitmap = createImage();
+        } else {
+            skipImage();
+        }
         int charCount = input.readShort();
         int[] cutOffsets = new int[charCount];
         int[] charWidth = new int[charCount];
@@ -1422,6 +1441,51 @@ public class Resources {
         return l10n;
     }
             
+    /**
+     * Skips an image entry without loading it, used for font bitmaps that won't be
+     * used since a different font is available
+     */
+    private void skipImage() throws IOException {
+        if(majorVersion == 0 && minorVersion == 0) {
+            skipFully(input.readInt());
+            return;
+        }
+        int type = input.readByte() & 0xff;
+        switch(type) {
+            case 0xf1:
+            case 0xf2:
+                skipFully(input.readInt());
+                return;
+            case 0xF3:
+                int size = input.readByte() & 0xff;
+                if(size == 0) {
+                    size = 256;
+                }
+                skipFully(size * 4);
+                int width = input.readShort();
+                int height = input.readShort();
+                skipFully(width * height);
+                return;
+            default:
+                // the layout of the other types isn't fixed, read the image and drop it
+                createImage(type);
+        }
+    }
+
+    private void skipFully(int size) throws IOException {
+        while(size > 0) {
+            long skipped = input.skip(size);
+            if(skipped <= 0) {
+                // skip doesn't indicate the end of the stream, read does
+                if(input.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            size -= skipped;
+        }
+    }
+
     /**
      * Creates a packed image from the input stream for an 8 bit packed image
      */
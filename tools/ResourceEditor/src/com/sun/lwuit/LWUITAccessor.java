@@ -31,7 +31,7 @@ package com.sun.lwuit;
  */
 public class LWUITAccessor {
     public static com.sun.lwuit.Image getImage(com.sun.lwuit.Font f) {
-        return ((com.sun.lwuit.CustomFont)f).cache;
+        return ((com.sun.lwuit.CustomFont)f).getAlphaImage();
     }
 
     public static int[] getOffsets(com.sun.lwuit.Font f) {